@@ -0,0 +1,330 @@
+//
+//  Corpus.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+package bench;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates a synthetic Bible in USFM, OSIS and ThML for the benchmarks. The
+ * text is random but always the same for the same number of books. Verses
+ * use the features that cost the most to convert: words of Jesus, footnotes,
+ * character styles, poetry, quotation marks replaced by ReplaceLiteral rules,
+ * and OSIS markup that is left out of the verse text.
+ **/
+public class Corpus
+{
+	private final static String WORDS[] = ("and it came to pass that the LORD spake unto Moses saying behold "
+		+ "I am with thee in the land of Egypt grace and peace be unto you from God our Father").split(" ");
+
+	private final static int CHAPTERS = 25;
+
+	/** Directory holding the generated files. **/
+	public final File directory;
+
+	/** USFM source directory, one file per book. **/
+	public final File usfmDirectory;
+
+	/** USFM parse configuration with ReplaceLiteral rules for quotation marks. **/
+	public final File usfmSettingsFile;
+
+	public final File osisFile;
+	public final File thmlFile;
+
+	/** Collections file for the OSIS file, with a collection of every book and one of part of the first book. **/
+	public final File collectionsFile;
+
+	private Random random;
+
+	/**
+	 * Generates the corpus in a new temporary directory.
+	 * @param bookCount Number of books, each of CHAPTERS chapters.
+	 **/
+	public Corpus(int bookCount) throws IOException
+	{
+		directory = File.createTempFile("gobible-bench", "");
+		directory.delete();
+		directory.mkdirs();
+
+		usfmDirectory = new File(directory, "usfm");
+		usfmDirectory.mkdirs();
+		usfmSettingsFile = new File(directory, "USFMSettings.txt");
+		osisFile = new File(directory, "bible.xml");
+		thmlFile = new File(directory, "bible.thml");
+		collectionsFile = new File(directory, "Collections.txt");
+
+		random = new Random(bookCount);
+		writeUsfm(bookCount);
+		writeOsis(bookCount);
+		writeThml(bookCount);
+
+		PrintWriter writer = open(usfmSettingsFile);
+		writer.println("ReplaceLiteral: /<</\\u201C/");
+		writer.println("ReplaceLiteral: /</\\u2018/");
+		writer.println("ReplaceLiteral: />>/\\u201D/");
+		writer.println("ReplaceLiteral: />/\\u2019/");
+		writer.close();
+
+		writer = open(collectionsFile);
+		writer.println("Info: Benchmark corpus");
+		writer.println("Source-Text: " + osisFile.getName());
+		writer.println("Source-Format: osis");
+		writer.println("Collection: All");
+		for (int book = 1; book <= bookCount; book++)
+		{
+			writer.println("Book: " + osisName(book));
+		}
+		writer.println("Collection: Part");
+		writer.println("Book: " + osisName(1) + ", 5, 20");
+		writer.close();
+	}
+
+	/**
+	 * Returns the files of the USFM books in order.
+	 **/
+	public File[] getUsfmFiles()
+	{
+		File[] files = usfmDirectory.listFiles();
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * Deletes the generated files.
+	 **/
+	public void delete()
+	{
+		delete(directory);
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+
+		file.delete();
+	}
+
+	/**
+	 * Reads a whole file as UTF-8.
+	 **/
+	public static String read(File file) throws IOException
+	{
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[8192];
+		int length;
+
+		while ((length = reader.read(buffer)) != -1)
+		{
+			text.append(buffer, 0, length);
+		}
+
+		reader.close();
+
+		return text.toString();
+	}
+
+	private void writeUsfm(int bookCount) throws IOException
+	{
+		for (int book = 1; book <= bookCount; book++)
+		{
+			PrintWriter writer = open(new File(usfmDirectory, String.format("%02d%s.usfm", book, osisName(book).toUpperCase())));
+
+			writer.println("\\id " + osisName(book).toUpperCase() + " Benchmark corpus");
+			writer.println("\\h Book " + book);
+			writer.println("\\mt1 Book " + book);
+
+			for (int chapter = 1; chapter <= CHAPTERS; chapter++)
+			{
+				writer.println("\\c " + chapter);
+				writer.println("\\s1 " + words(3));
+				writer.println("\\p");
+
+				int verses = verseCount();
+
+				for (int verse = 1; verse <= verses; verse++)
+				{
+					writer.print("\\v " + verse + " " + words(5 + random.nextInt(30)));
+
+					if (verse % 5 == 0)
+					{
+						writer.print(" \\wj " + words(6) + "\\wj*");
+					}
+					if (verse % 7 == 0)
+					{
+						writer.print(" \\f + \\fr " + chapter + "." + verse + " \\ft " + words(4) + "\\f*");
+					}
+					if (verse % 3 == 0)
+					{
+						writer.print(" <<" + words(3) + " <" + words(2) + "> " + words(2) + ">>");
+					}
+
+					writer.println(" \\nd Lord\\nd* " + words(3) + ".");
+
+					if (verse % 6 == 0)
+					{
+						writer.println("\\q1 " + words(5));
+						writer.println("\\q2 " + words(5));
+					}
+				}
+			}
+
+			writer.close();
+		}
+	}
+
+	private void writeOsis(int bookCount) throws IOException
+	{
+		PrintWriter writer = open(osisFile);
+
+		writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		writer.println("<osis xmlns=\"http://www.bibletechnologies.net/2003/OSIS/namespace\">");
+		writer.println("<osisText osisIDWork=\"Bench\" xml:lang=\"en\">");
+		writer.println("<header><work osisWork=\"Bench\"><title>Benchmark corpus</title></work></header>");
+		writer.println("<div type=\"bookGroup\">");
+
+		for (int book = 1; book <= bookCount; book++)
+		{
+			String name = osisName(book);
+
+			writer.println("<div type=\"book\" osisID=\"" + name + "\" canonical=\"true\">");
+			writer.println("<title type=\"main\">Book " + book + "</title>");
+
+			for (int chapter = 1; chapter <= CHAPTERS; chapter++)
+			{
+				writer.println("<chapter osisID=\"" + name + "." + chapter + "\">");
+				writer.println("<title type=\"chapter\">Chapter " + chapter + "</title>");
+
+				int verses = verseCount();
+
+				for (int verse = 1; verse <= verses; verse++)
+				{
+					writer.print("<verse osisID=\"" + name + "." + chapter + "." + verse + "\">");
+					writer.print("<w lemma=\"strong:H" + verse + "\">" + words(3) + "</w> " + words(5 + random.nextInt(30)));
+
+					if (verse % 5 == 0)
+					{
+						writer.print(" <q who=\"Jesus\" marker=\"\">" + words(6) + "</q>");
+					}
+					if (verse % 7 == 0)
+					{
+						writer.print("<note type=\"x-footnote\"><reference>" + chapter + ":" + verse + "</reference> " + words(4) + "</note>");
+					}
+
+					writer.println(" <transChange type=\"added\">" + words(2) + "</transChange> &amp; &quot;" + words(2) + "&quot;.</verse>");
+				}
+
+				writer.println("</chapter>");
+			}
+
+			writer.println("</div>");
+		}
+
+		writer.println("</div>");
+		writer.println("</osisText>");
+		writer.println("</osis>");
+		writer.close();
+	}
+
+	private void writeThml(int bookCount) throws IOException
+	{
+		PrintWriter writer = open(thmlFile);
+
+		writer.println("<?xml version=\"1.0\"?>");
+		writer.println("<ThML>");
+		writer.println("<ThML.head><title>Benchmark corpus</title></ThML.head>");
+		writer.println("<ThML.body>");
+		writer.println("<div1 title=\"Benchmark\">");
+
+		for (int book = 1; book <= bookCount; book++)
+		{
+			writer.println("<div2 title=\"Book " + book + "\" id=\"" + osisName(book).toUpperCase() + "\">");
+
+			for (int chapter = 1; chapter <= CHAPTERS; chapter++)
+			{
+				writer.println("<div3 title=\"Chapter " + chapter + "\">");
+				writer.print("<p>");
+
+				int verses = verseCount();
+
+				for (int verse = 1; verse <= verses; verse++)
+				{
+					writer.print("<scripture passage=\"Book " + book + " " + chapter + ":" + verse + "\" /><sup>" + verse + "</sup> ");
+					writer.print(words(5 + random.nextInt(30)));
+
+					if (verse % 4 == 0)
+					{
+						writer.print(" <span class=\"red\">" + words(4) + "</span>");
+					}
+
+					writer.println(" &quot;" + words(2) + "&quot;");
+
+					if (verse % 8 == 0)
+					{
+						writer.println("</p>");
+						writer.print("<p>");
+					}
+				}
+
+				writer.println("</p>");
+				writer.println("</div3>");
+			}
+
+			writer.println("</div2>");
+		}
+
+		writer.println("</div1>");
+		writer.println("</ThML.body>");
+		writer.println("</ThML>");
+		writer.close();
+	}
+
+	/**
+	 * Returns the OSIS name of a book, which is also the key of the book once parsed.
+	 **/
+	public static String osisName(int book)
+	{
+		return "Bk" + book;
+	}
+
+	private int verseCount()
+	{
+		return 10 + random.nextInt(30);
+	}
+
+	private String words(int count)
+	{
+		StringBuilder words = new StringBuilder();
+
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				words.append(' ');
+			}
+
+			words.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+
+		return words.toString();
+	}
+
+	private static PrintWriter open(File file) throws IOException
+	{
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+	}
+}
@@ -0,0 +1,166 @@
+//
+//  GoBible.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+package bench;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Gives the benchmarks access to GoBibleCreator's classes. They are in the
+ * default package, which JMH doesn't allow for benchmarks and which classes
+ * in a package can't refer to, so they are reached through method handles.
+ * The handles have their reference types erased to Object so that they can
+ * be called with invokeExact() without naming the classes. Kept in static
+ * final fields, they are constants to the JIT and cost no more than a
+ * direct call.
+ **/
+public final class GoBible
+{
+	private GoBible()
+	{
+	}
+
+	/**
+	 * Returns a class of GoBibleCreator.
+	 **/
+	public static Class<?> type(String name)
+	{
+		try
+		{
+			return Class.forName(name);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IllegalStateException("GoBibleCreator classes aren't on the class path: " + name, e);
+		}
+	}
+
+	/**
+	 * Returns a handle to a method with its reference types erased to Object.
+	 * An instance method takes the instance as its first parameter.
+	 **/
+	public static MethodHandle method(String className, String name, Class<?>... parameterTypes)
+	{
+		try
+		{
+			Method method = type(className).getDeclaredMethod(name, parameterTypes);
+			method.setAccessible(true);
+
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+
+			return handle.asType(handle.type().erase());
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(className + "." + name, e);
+		}
+	}
+
+	/**
+	 * Returns a handle to a constructor with its reference types erased to Object.
+	 **/
+	public static MethodHandle constructor(String className, Class<?>... parameterTypes)
+	{
+		try
+		{
+			Constructor<?> constructor = type(className).getDeclaredConstructor(parameterTypes);
+			constructor.setAccessible(true);
+
+			MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+
+			return handle.asType(handle.type().erase());
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(className + ".<init>", e);
+		}
+	}
+
+	/**
+	 * Returns a handle reading an instance field, with its reference types
+	 * erased to Object.
+	 **/
+	public static MethodHandle getter(String className, String name)
+	{
+		try
+		{
+			Field field = type(className).getDeclaredField(name);
+			field.setAccessible(true);
+
+			MethodHandle handle = MethodHandles.lookup().unreflectGetter(field);
+
+			return handle.asType(handle.type().erase());
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(className + "." + name, e);
+		}
+	}
+
+	/**
+	 * Returns a field of GoBibleCreator's BuildContext for the current
+	 * thread, which holds the settings and state of a build.
+	 **/
+	public static Object getContextField(String name)
+	{
+		try
+		{
+			Method context = type("GoBibleCreator").getDeclaredMethod("context");
+			Object buildContext = context.invoke(null);
+
+			Field field = type("BuildContext").getDeclaredField(name);
+			field.setAccessible(true);
+
+			return field.get(buildContext);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("BuildContext." + name, e);
+		}
+	}
+
+	/**
+	 * Forgets the book names collected by earlier parses. The converters add
+	 * to the bookNames of the BuildContext, which would otherwise grow with
+	 * every benchmark invocation.
+	 **/
+	public static void clearBookNames()
+	{
+		((Vector<?>) getContextField("bookNames")).clear();
+	}
+
+	/**
+	 * Silences System.out, as GoBibleCreator reports its progress there.
+	 * @return The original System.out so that it can be restored.
+	 **/
+	public static PrintStream silence()
+	{
+		PrintStream out = System.out;
+
+		System.setOut(new PrintStream(new NullOutputStream()));
+
+		return out;
+	}
+
+	/**
+	 * Discards everything written to it.
+	 **/
+	public static class NullOutputStream extends OutputStream
+	{
+		public void write(int b)
+		{
+		}
+
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	}
+}
@@ -0,0 +1,163 @@
+//
+//  UsfmBenchmark.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+package bench;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import usfm.*;
+
+/**
+ * Measures lexing and parsing USFM. The books are read into memory first so
+ * that only the conversion is measured, not reading the files.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsfmBenchmark
+{
+	private final static MethodHandle NEW_LEXER = GoBible.constructor("USFMLex", Reader.class);
+	private final static MethodHandle YYLEX = GoBible.method("USFMLex", "yylex");
+	private final static MethodHandle SET_REUSE_SYMBOLS = GoBible.method("USFMLex", "setReuseSymbols", boolean.class);
+	private final static MethodHandle TEXT_LENGTH = GoBible.method("USFMLex", "textLength");
+
+	private final static MethodHandle NEW_PARSER = GoBible.constructor("USFMParse");
+	private final static MethodHandle COPY_PARSER = GoBible.constructor("USFMParse", GoBible.type("USFMParse"));
+	private final static MethodHandle READ_CONFIG = GoBible.method("USFMParse", "readConfig", String.class);
+	private final static MethodHandle RESET = GoBible.method("USFMParse", "reset", USFMSymbol.class, GoBible.type("USFMLex"));
+	private final static MethodHandle PARSE_CHAPTER = GoBible.method("USFMParse", "parseChapter");
+
+	/** Number of books in the corpus. **/
+	@Param("66")
+	public int bookCount;
+
+	private Corpus corpus;
+
+	/** Text of each book. **/
+	private String[] books;
+
+	/** Parser holding the configuration, copied for each book as Book does. **/
+	private Object config;
+
+	@Setup
+	public void setUp() throws Throwable
+	{
+		corpus = new Corpus(bookCount);
+
+		File[] files = corpus.getUsfmFiles();
+		books = new String[files.length];
+
+		for (int i = 0; i < files.length; i++)
+		{
+			books[i] = Corpus.read(files[i]);
+		}
+
+		config = (Object) NEW_PARSER.invokeExact();
+		READ_CONFIG.invokeExact(config, (Object) corpus.usfmSettingsFile.getPath());
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		corpus.delete();
+	}
+
+	/**
+	 * USFMLex.yylex() over every book.
+	 **/
+	@Benchmark
+	public int lex(Blackhole blackhole) throws Throwable
+	{
+		int tokens = 0;
+
+		for (String book : books)
+		{
+			Object lexer = (Object) NEW_LEXER.invokeExact((Object) new StringReader(book));
+			USFMSymbol symbol;
+
+			do
+			{
+				symbol = (USFMSymbol) (Object) YYLEX.invokeExact(lexer);
+				blackhole.consume(symbol);
+				tokens++;
+			}
+			while (symbol.type != SymbolType.EOF);
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * As lex(), but with the scanner reusing its symbols and the text read
+	 * from its buffer, as USFMParse does.
+	 **/
+	@Benchmark
+	public int lexReusingSymbols() throws Throwable
+	{
+		int characters = 0;
+
+		for (String book : books)
+		{
+			Object lexer = (Object) NEW_LEXER.invokeExact((Object) new StringReader(book));
+			SET_REUSE_SYMBOLS.invokeExact(lexer, true);
+			USFMSymbol symbol;
+
+			do
+			{
+				symbol = (USFMSymbol) (Object) YYLEX.invokeExact(lexer);
+
+				if (symbol.type == SymbolType.TEXT)
+				{
+					characters += (int) TEXT_LENGTH.invokeExact(lexer);
+				}
+			}
+			while (symbol.type != SymbolType.EOF);
+		}
+
+		return characters;
+	}
+
+	/**
+	 * USFMParse.parseChapter() over every chapter of every book, starting
+	 * from the first chapter as Book does. This includes lexing, see lex().
+	 **/
+	@Benchmark
+	public void parseChapters(Blackhole blackhole) throws Throwable
+	{
+		for (String book : books)
+		{
+			Object lexer = (Object) NEW_LEXER.invokeExact((Object) new StringReader(book));
+			USFMSymbol symbol;
+
+			// Skip the book headings up to the chapter number of the first chapter
+			do
+			{
+				symbol = (USFMSymbol) (Object) YYLEX.invokeExact(lexer);
+			}
+			while (symbol.type != SymbolType.EOF && !(symbol.type == SymbolType.TAG_OPEN && symbol.data.equals("c")));
+
+			symbol = (USFMSymbol) (Object) YYLEX.invokeExact(lexer);
+
+			Object parser = (Object) COPY_PARSER.invokeExact(config);
+			RESET.invokeExact(parser, (Object) symbol, lexer);
+
+			Object chapter;
+
+			while ((chapter = (Object) PARSE_CHAPTER.invokeExact(parser)) != null)
+			{
+				blackhole.consume(chapter);
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+//
+//  WriteBenchmark.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+package bench;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures writing out a collection of every book in the corpus: the
+ * index, the book data and the whole JAR including the copy of GoBibleCore.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark
+{
+	private final static MethodHandle PARSE_XML = GoBible.method("GoBibleCreator", "parseXml", File.class);
+	private final static MethodHandle PARSE_COLLECTIONS_FILE = GoBible.method("GoBibleCreator", "parseCollectionsFile", File.class, HashMap.class);
+
+	private final static MethodHandle WRITE_INDEX = GoBible.method("GoBibleCreator", "writeMultipleIndex",
+		JarOutputStream.class, GoBible.type("Collection"), HashMap.class);
+	private final static MethodHandle WRITE_BOOKS = GoBible.method("GoBibleCreator", "writeMultipleBooks",
+		JarOutputStream.class, GoBible.type("Collection"), HashMap.class);
+	private final static MethodHandle WRITE_COLLECTION_JAR = GoBible.method("GoBibleCreator", "writeCollectionJar",
+		File.class, File.class, GoBible.type("Collection"), HashMap.class, JarFile.class, Manifest.class, String.class);
+
+	/** Number of books in the corpus. **/
+	@Param("66")
+	public int bookCount;
+
+	/** The GoBibleCore JAR copied into the collection JAR, relative to the bench directory. **/
+	@Param("../src/GoBibleCore/GoBibleCore2.jar")
+	public String coreJar;
+
+	private Corpus corpus;
+
+	private Object books;
+
+	/** Collection of every book. **/
+	private Object collection;
+
+	private JarFile goBibleJar;
+	private Manifest manifest;
+	private File jarFile;
+
+	private PrintStream out;
+
+	@Setup
+	public void setUp() throws Throwable
+	{
+		corpus = new Corpus(bookCount);
+		out = GoBible.silence();
+
+		books = (Object) PARSE_XML.invokeExact((Object) corpus.osisFile);
+		Vector<?> collections = (Vector<?>) (Object) PARSE_COLLECTIONS_FILE.invokeExact((Object) corpus.collectionsFile, books);
+		collection = collections.get(0);
+
+		goBibleJar = new JarFile(coreJar);
+		manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		jarFile = new File(corpus.directory, "All.jar");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		System.setOut(out);
+		goBibleJar.close();
+		corpus.delete();
+	}
+
+	@Benchmark
+	public void writeMultipleIndex() throws Throwable
+	{
+		JarOutputStream jarOutputStream = new JarOutputStream(new GoBible.NullOutputStream());
+		WRITE_INDEX.invokeExact((Object) jarOutputStream, collection, books);
+		jarOutputStream.close();
+	}
+
+	@Benchmark
+	public Object writeMultipleBooks() throws Throwable
+	{
+		JarOutputStream jarOutputStream = new JarOutputStream(new GoBible.NullOutputStream());
+		Object sizes = WRITE_BOOKS.invokeExact((Object) jarOutputStream, collection, books);
+		jarOutputStream.close();
+		return sizes;
+	}
+
+	@Benchmark
+	public long writeCollectionJar() throws Throwable
+	{
+		WRITE_COLLECTION_JAR.invokeExact((Object) corpus.directory, (Object) jarFile, collection, books, (Object) goBibleJar, (Object) manifest, (Object) "");
+		return jarFile.length();
+	}
+}
@@ -0,0 +1,130 @@
+//
+//  XmlBenchmark.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+package bench;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import jolon.xml.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures parsing OSIS and ThML files with XMLParser, converting the parsed
+ * trees to books with OsisConverter and ThmlConverter, and streaming OSIS
+ * straight to books with OsisStreamConverter. The converters leave each
+ * chapter until it is first asked for, so the conversions ask for every
+ * chapter to measure all of the work a build of the whole Bible does.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlBenchmark
+{
+	private final static MethodHandle NEW_OSIS_CONVERTER = GoBible.constructor("OsisConverter");
+	private final static MethodHandle NEW_THML_CONVERTER = GoBible.constructor("ThmlConverter");
+	private final static MethodHandle CONVERT = GoBible.method("GoBibleCreator", "parse", XMLObject.class);
+
+	private final static MethodHandle NEW_OSIS_STREAM_CONVERTER = GoBible.constructor("OsisStreamConverter");
+	private final static MethodHandle STREAM = GoBible.method("OsisStreamConverter", "parse", File.class);
+
+	private final static MethodHandle GET_CHAPTERS = GoBible.getter("Book", "chapters");
+	private final static MethodHandle GET_CHAPTER = GoBible.method("Book", "getChapter", int.class);
+
+	/** Number of books in the corpus. **/
+	@Param("66")
+	public int bookCount;
+
+	private Corpus corpus;
+
+	/** Trees parsed from the corpus, for the converters. **/
+	private XMLObject osis, thml;
+
+	private PrintStream out;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		corpus = new Corpus(bookCount);
+
+		osis = XMLParser.parseFile(corpus.osisFile).getChild("osis");
+		thml = XMLParser.parseFile(corpus.thmlFile).getChild("ThML");
+
+		out = GoBible.silence();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		System.setOut(out);
+		corpus.delete();
+	}
+
+	@Benchmark
+	public XMLObject parseOsis() throws IOException
+	{
+		return XMLParser.parseFile(corpus.osisFile);
+	}
+
+	@Benchmark
+	public XMLObject parseThml() throws IOException
+	{
+		return XMLParser.parseFile(corpus.thmlFile);
+	}
+
+	@Benchmark
+	public Object convertOsis() throws Throwable
+	{
+		Object books = (Object) CONVERT.invokeExact((Object) NEW_OSIS_CONVERTER.invokeExact(), (Object) osis);
+		GoBible.clearBookNames();
+		return convertChapters(books);
+	}
+
+	@Benchmark
+	public Object convertThml() throws Throwable
+	{
+		Object books = (Object) CONVERT.invokeExact((Object) NEW_THML_CONVERTER.invokeExact(), (Object) thml);
+		GoBible.clearBookNames();
+		return convertChapters(books);
+	}
+
+	/**
+	 * Parsing and converting OSIS in one, to compare with parseOsis() plus
+	 * convertOsis(). Every chapter is asked for here too, in case streaming
+	 * ever leaves chapters to be converted later as well.
+	 **/
+	@Benchmark
+	public Object streamOsis() throws Throwable
+	{
+		Object books = (Object) STREAM.invokeExact((Object) NEW_OSIS_STREAM_CONVERTER.invokeExact(), (Object) corpus.osisFile);
+		GoBible.clearBookNames();
+		return convertChapters(books);
+	}
+
+	/**
+	 * Asks for every chapter of the books so that any not yet converted are.
+	 **/
+	private static Object convertChapters(Object books) throws Throwable
+	{
+		for (Object book : ((HashMap<?, ?>) books).values())
+		{
+			int chapterCount = ((Vector<?>) (Object) GET_CHAPTERS.invokeExact(book)).size();
+
+			for (int i = 0; i < chapterCount; i++)
+			{
+				Object chapter = (Object) GET_CHAPTER.invokeExact(book, i);
+			}
+		}
+
+		return books;
+	}
+}
@@ -0,0 +1,278 @@
+//
+//  BookCache.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * Keeps the books parsed from each source file in a directory so that they
+ * don't have to be parsed again while the source file is unchanged.
+ * <p>
+ * Each cache file is named after a SHA-256 hash of the source file together
+ * with everything else that affects how it is parsed: the source format, the
+ * parse settings from the Collections file and the contents of any
+ * configuration files such as USFMSettings.txt. Changing any of these simply
+ * gives a different name, so nothing ever needs to be invalidated. Old files
+ * can be deleted at any time.
+ * </p>
+ **/
+public class BookCache
+{
+	/** Changes whenever the layout of the cache files or the parsers change. **/
+	private final static int VERSION = 1;
+
+	private final static String EXTENSION = ".books";
+
+	/** Directory holding the cache files. **/
+	private File directory;
+
+	/** Hash of the parse settings, the start of every key. **/
+	private byte[] settingsHash;
+
+	/**
+	 * Opens a cache, creating the directory if necessary.
+	 * @param directory Directory holding the cache files.
+	 * @param settings Parse settings that affect the books produced.
+	 * @param configFiles Files read by the parser, null entries and files that
+	 * don't exist are allowed.
+	 **/
+	public BookCache(File directory, String settings, File[] configFiles) throws IOException
+	{
+		this.directory = directory;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Couldn't create cache directory: " + directory);
+		}
+
+		MessageDigest digest = newDigest();
+		digest.update(("GoBibleCreator " + VERSION + "\n" + settings + "\n").getBytes("UTF-8"));
+
+		for (int i = 0; i < configFiles.length; i++)
+		{
+			if (configFiles[i] != null && configFiles[i].isFile())
+			{
+				digest.update(readFile(configFiles[i]));
+			}
+			else
+			{
+				digest.update((byte) 0);
+			}
+		}
+
+		settingsHash = digest.digest();
+	}
+
+	/**
+	 * Returns the key identifying the books parsed from the source file with
+	 * the cache's settings.
+	 **/
+	public String getKey(File sourceFile) throws IOException
+	{
+		MessageDigest digest = newDigest();
+		digest.update(settingsHash);
+		digest.update(readFile(sourceFile));
+
+		StringBuilder key = new StringBuilder();
+
+		for (byte b : digest.digest())
+		{
+			key.append(Character.forDigit((b >> 4) & 0xf, 16));
+			key.append(Character.forDigit(b & 0xf, 16));
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Loads the books stored under the key.
+	 * @return The books in the order they were stored, or null if they aren't
+	 * in the cache or the cache file can't be read.
+	 **/
+	public Vector<Book> load(String key)
+	{
+		File file = new File(directory, key + EXTENSION);
+
+		if (!file.isFile())
+		{
+			return null;
+		}
+
+		try
+		{
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+
+			try
+			{
+				if (input.readInt() != VERSION)
+				{
+					return null;
+				}
+
+				int bookCount = input.readInt();
+				Vector<Book> books = new Vector<Book>(bookCount);
+
+				for (int i = 0; i < bookCount; i++)
+				{
+					Book book = new Book(readString(input), input.readInt(), input.readInt());
+					book.fileName = readString(input);
+
+					int chapterCount = input.readInt();
+
+					for (int j = 0; j < chapterCount; j++)
+					{
+						Chapter chapter = new Chapter();
+						int verseCount = input.readInt();
+
+						for (int k = 0; k < verseCount; k++)
+						{
+							chapter.addVerse(readString(input));
+						}
+
+						chapter.trimToSize();
+
+						book.chapters.addElement(chapter);
+					}
+
+					books.add(book);
+				}
+
+				return books;
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("Warning: Ignoring unreadable cache file " + file.getName() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores books under the key. The file is written under a temporary name
+	 * and then renamed so that a partly written file is never loaded, even if
+	 * several threads or builds store the same key at once.
+	 **/
+	public void store(String key, Vector<Book> books)
+	{
+		File file = new File(directory, key + EXTENSION);
+
+		try
+		{
+			File tmpFile = File.createTempFile(key, ".tmp", directory);
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+
+			try
+			{
+				output.writeInt(VERSION);
+				output.writeInt(books.size());
+
+				for (Book book : books)
+				{
+					writeString(output, book.name);
+					output.writeInt(book.startChapter);
+					output.writeInt(book.endChapter);
+					writeString(output, book.fileName);
+
+					output.writeInt(book.chapters.size());
+
+					for (int j = 0; j < book.chapters.size(); j++)
+					{
+						Chapter chapter = book.getChapter(j);
+						output.writeInt(chapter.getVerseCount());
+
+						for (int k = 0; k < chapter.getVerseCount(); k++)
+						{
+							writeString(output, chapter.getVerse(k));
+						}
+					}
+				}
+			}
+			finally
+			{
+				output.close();
+			}
+
+			if (!tmpFile.renameTo(file))
+			{
+				// Another build may have stored the same books in the meantime
+				tmpFile.delete();
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("Warning: Couldn't write cache file " + file.getName() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a string as its length in UTF-8 bytes followed by the bytes, as
+	 * DataOutputStream.writeUTF() is limited to 64 KB. A null string is
+	 * written as a length of -1.
+	 **/
+	private static void writeString(DataOutputStream output, String s) throws IOException
+	{
+		if (s == null)
+		{
+			output.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = s.getBytes("UTF-8");
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(DataInputStream input) throws IOException
+	{
+		int length = input.readInt();
+
+		if (length == -1)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static byte[] readFile(File file) throws IOException
+	{
+		byte[] bytes = new byte[(int) file.length()];
+
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			input.readFully(bytes);
+		}
+		finally
+		{
+			input.close();
+		}
+
+		return bytes;
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Every Java platform is required to support SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+}
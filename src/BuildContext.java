@@ -0,0 +1,144 @@
+//
+//  BuildContext.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.util.*;
+
+/**
+ * The settings and state of building one Collections file, most of them read
+ * from the Collections file itself. Each build gets a new context so that
+ * nothing carries over from one Collections file to the next, and builds of
+ * several Collections files can run at the same time, see
+ * GoBibleCreator.context().
+ * <p>
+ * Settings that come from the command line, and resources that don't change
+ * from one build to the next such as GoBibleCore, are kept by GoBibleCreator
+ * itself.
+ * </p>
+ **/
+public class BuildContext
+{
+	/**
+	 * Approximate size of the combined files in bytes. Set with the
+	 * Data-File-Size property in the Collections file.
+	 **/
+	int maxFileSize = GoBibleCreator.MAX_FILE_SIZE_MIDP_2;
+
+	/**
+	 * How chapters are packed into combined files, see FilePacker. Set with
+	 * the File-Packing property in the Collections file.
+	 **/
+	FilePacker.Method filePacking = FilePacker.Method.greedy;
+
+	/**
+	 * How each entry of the collection JARs is compressed. Set with the
+	 * Compression properties in the Collections file.
+	 **/
+	JarCompression compression = new JarCompression();
+
+	/**
+	 * Whether to report how much a shared dictionary would save, see
+	 * TextDictionary. Set with "Text-Dictionary: Estimate" in the
+	 * Collections file.
+	 **/
+	boolean estimateTextDictionary = false;
+
+	/** Location of WAP site where JAD files will be placed.
+		If no 'Wap-site:' attribute is specified in the Collections file then no WAP files will be
+		produced. **/
+	String wapSite = null;
+
+	/** URL to be used in MIDlet-Info-URL **/
+	String midlet_infoURL = null;
+
+	/** value to be used in MIDlet-Vendor **/
+	String midlet_vendor = null;
+
+	/** Info string. **/
+	String infoString = null;
+
+	/** Custom font string. **/
+	String customFontString = null;
+
+	/** Text alignment. **/
+	int align = GoBibleCreator.ALIGN_LEFT;
+
+	/** Language Code appended to Collection names. eg. Ar, Zh, En, etc. **/
+	String languageCode = "";
+	GoBibleCreator.languageCodePositionType languageCodePosition;
+
+	/** Contains the contents of the English UI properties file and
+		non-English UI strings specified in the Collections file. **/
+	HashMap uiProperties = new HashMap();
+
+	/** Identical to the keys used in the books HashMap except retains the order
+		of books from the XML file (the HashMap does not retain order).
+		@see GoBibleCreator#parseBooks **/
+	Vector<String> bookNames = new Vector<String>();
+
+	/**
+	 * This will be prepended to the Source-Text path in the Collections.txt file.
+	 * Can be set through the -d parameter, otherwise it is the directory of
+	 * the Collections file.
+	 */
+	String baseSourceDirectory = null;
+
+	// the extension that is used by the USFMr files
+	// introduced in version 2.3
+	String usfmSourceFileExtension = null;
+	// file to help parse USFM
+	// introduced in version 2.4.6
+	String usfmParseConfigFile = "USFMSettings.txt";
+	// the file path (relative to the baseSource directory) to an alternate
+	// icon that will display on the phone
+	// introduced in version 2.3
+	String phoneIconFilepath = null;
+	//the USFM file codepage for the source files
+	// introduced in version 2.3
+	String fileCodepage = null;
+	// alternate name for the application that will be displayed in the
+	// phone's title
+	// introduced in version 2.3
+	String applicationName = null;
+	// flag to determine if red lettering is used
+	// introduced in version 2.3
+	boolean useRedLettering = true;
+	// the tag holding the book name in USFM files
+	// introduced in version 2.3
+	String sTitleTag = "\\h";
+	// introduced in version 2.3
+	GoBibleCreator.SourceFormatType sourceFormatType;
+
+	/** Empty-Verse-Text string. **/
+	String EmptyVerseString = null;
+
+	/** USFM parser holding the parse configuration, see Book.prepareInterpreter(). **/
+	USFMParse interpreter = null;
+
+	/**
+	 * Property lines that take the place of the Collections file's own, see
+	 * GoBibleCreator.openCollectionsFile(). Given with a build daemon job.
+	 **/
+	Vector<String> overrides = new Vector<String>();
+
+	/**
+	 * Whether the time taken by each phase is printed as it finishes, see
+	 * BuildReport. Set for build daemon jobs so their clients can follow the
+	 * build.
+	 **/
+	boolean reportPhases = false;
+
+	/**
+	 * Creates the context for a build.
+	 * @param baseSourceDirectory Directory given with the -d parameter, or
+	 * null to use the directory of the Collections file.
+	 **/
+	public BuildContext(String baseSourceDirectory)
+	{
+		this.baseSourceDirectory = baseSourceDirectory;
+	}
+}
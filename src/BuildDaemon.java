@@ -0,0 +1,430 @@
+//
+//  BuildDaemon.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps GoBibleCreator running and builds Collections files as they are
+ * asked for over a local socket, see the -s command-line flag. Builds then
+ * don't pay for starting the JVM, and reuse what earlier builds have loaded:
+ * the GoBibleCore JAR and its entries, ui.properties, the USFM parse
+ * configurations and, with -c, the parsed books.
+ * <p>
+ * A client asks for a build by sending, in UTF-8:
+ * <pre>
+ *     /path/to/Collections.txt
+ *     Data-File-Size: High-Memory
+ *     Compression: Bible Data/*, Stored
+ *     (blank line)
+ * </pre>
+ * The first line is the Collections file, relative paths being relative to
+ * the daemon's root directory. Any lines after it up to a blank line are
+ * properties that take the place of the Collections file's own settings for
+ * this build. The job must be sent within HEADER_TIMEOUT of connecting. The
+ * daemon sends back the build's console output as it goes, including the
+ * time taken by each phase, and finishes with a line of either
+ * "Result: OK" or "Result: Failed" and closes the connection. For example
+ * with netcat:
+ * <pre>
+ *     printf '/path/to/Collections.txt\n\n' | nc localhost 4747
+ * </pre>
+ * Sending "Stop" instead of a Collections file is answered straight away,
+ * rather than waiting behind the queued builds, and the daemon stops
+ * accepting connections. It exits once the jobs it has already accepted
+ * are built. Jobs are built -p at a time, any others wait their turn.
+ * </p>
+ * <p>
+ * Security: the daemon only listens on the loopback interface, but that
+ * doesn't stop other users of the same machine from connecting. Whoever
+ * connects has the daemon read and write files with the daemon's
+ * permissions. So the daemon only builds Collections files under its root
+ * directory, set with -r and otherwise the directory it was started in,
+ * and only accepts overrides of Source-Text, Phone-Icon-Filepath and
+ * USFM-ParseConfig that stay within the root. Collection and Book lines
+ * can't be overridden. The Collections files in the root are trusted
+ * though: whatever they name is read and their JARs are written where they
+ * say. On a shared machine the root must only be writable by those allowed
+ * to build, and the daemon shouldn't be run by a user with more access
+ * than they have.
+ * </p>
+ **/
+public class BuildDaemon
+{
+	/** Port listened on when -s isn't given one. **/
+	public final static int DEFAULT_PORT = 4747;
+
+	/** Milliseconds a client has to send its job before it is disconnected. **/
+	public final static int HEADER_TIMEOUT = 10000;
+
+	/** Number of clients whose jobs can be read at the same time. **/
+	private final static int READER_COUNT = 4;
+
+	/** Line asking the daemon to stop. **/
+	private final static String STOP_COMMAND = "Stop";
+
+	/** Properties naming files, which must stay within the root when overridden. **/
+	private final static String[] PATH_PROPERTIES = {"Source-Text:", "Phone-Icon-Filepath:", "USFM-ParseConfig:"};
+
+	/** Properties that make up the collections rather than setting them, which can't be overridden. **/
+	private final static String[] COLLECTION_PROPERTIES = {"Collection:", "Book:"};
+
+	private ServerSocket serverSocket;
+
+	/** Reads the jobs sent by clients. **/
+	private ExecutorService readers;
+
+	/** Builds the jobs that have been read. **/
+	private ExecutorService executor;
+
+	/** Directory that Collections files must be within, with no links or relative parts. **/
+	private File rootDirectory;
+
+	/**
+	 * A job read from a client, waiting to be built.
+	 **/
+	private static class Job
+	{
+		File collectionsFile;
+		BuildContext context;
+		Socket socket;
+		PrintStream client;
+	}
+
+	/**
+	 * Starts listening for builds on the loopback interface.
+	 * @param port Port to listen on, 0 for any free port.
+	 * @param buildCount Number of builds run at the same time.
+	 * @param rootDirectory Directory that Collections files must be within.
+	 **/
+	public BuildDaemon(int port, int buildCount, File rootDirectory) throws IOException
+	{
+		this.rootDirectory = rootDirectory.getCanonicalFile();
+
+		if (!this.rootDirectory.isDirectory())
+		{
+			throw new FileNotFoundException("Root directory " + rootDirectory + " doesn't exist.");
+		}
+
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		readers = Executors.newFixedThreadPool(READER_COUNT);
+		executor = Executors.newFixedThreadPool(buildCount);
+	}
+
+	/**
+	 * Returns the port being listened on.
+	 **/
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts builds until asked to stop, then waits for the builds that have
+	 * been accepted to finish.
+	 **/
+	public void run() throws IOException
+	{
+		// Phases are only measured once enabled, and their times are sent to the clients
+		if (!BuildReport.isEnabled())
+		{
+			BuildReport.enable();
+		}
+
+		ThreadConsole.install();
+
+		System.out.println("Listening for builds on localhost:" + getPort() + " of Collections files under " + rootDirectory + ".");
+
+		try
+		{
+			while (true)
+			{
+				final Socket socket;
+
+				try
+				{
+					socket = serverSocket.accept();
+				}
+				catch (SocketException e)
+				{
+					// The server socket has been closed by a Stop request
+					break;
+				}
+
+				readers.execute(new Runnable()
+				{
+					public void run()
+					{
+						accept(socket);
+					}
+				});
+			}
+		}
+		finally
+		{
+			// Jobs still being read are built before the builders are shut down
+			awaitTermination(readers);
+			awaitTermination(executor);
+		}
+
+		System.out.println("Stopped listening for builds.");
+	}
+
+	private static void awaitTermination(ExecutorService service) throws IOException
+	{
+		service.shutdown();
+
+		try
+		{
+			service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops accepting builds.
+	 **/
+	public void stop()
+	{
+		try
+		{
+			serverSocket.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing more can be accepted either way
+		}
+	}
+
+	/**
+	 * Reads a job from a client and queues it to be built, or stops the
+	 * daemon if that is what was asked.
+	 **/
+	private void accept(Socket socket)
+	{
+		final Job job = new Job();
+		job.socket = socket;
+
+		try
+		{
+			socket.setSoTimeout(HEADER_TIMEOUT);
+			job.client = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+
+			String error;
+
+			try
+			{
+				error = readJob(new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")), job);
+			}
+			catch (SocketTimeoutException e)
+			{
+				error = "Timed out waiting for the job.";
+			}
+
+			if (error != null)
+			{
+				job.client.println("Error: " + error);
+				job.client.println("Result: Failed");
+				socket.close();
+				return;
+			}
+
+			if (job.collectionsFile == null)
+			{
+				System.out.println("Stop requested.");
+				stop();
+				job.client.println("Result: OK");
+				socket.close();
+				return;
+			}
+
+			try
+			{
+				executor.execute(new Runnable()
+				{
+					public void run()
+					{
+						build(job);
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				job.client.println("Error: The daemon is stopping.");
+				job.client.println("Result: Failed");
+				socket.close();
+			}
+		}
+		catch (IOException e)
+		{
+			// The client has gone, nothing more can be sent to it
+			System.out.println("Error: Lost connection with a build client: " + e);
+			close(socket);
+		}
+	}
+
+	/**
+	 * Reads the Collections file and overrides of a job.
+	 * @return Why the job can't be built, or null if it can. The job's
+	 * Collections file is left null if it asks the daemon to stop.
+	 **/
+	private String readJob(BufferedReader reader, Job job) throws IOException
+	{
+		String path = reader.readLine();
+
+		if (path == null || path.trim().length() == 0)
+		{
+			return "No Collections file given.";
+		}
+
+		path = path.trim();
+
+		if (path.equals(STOP_COMMAND))
+		{
+			return null;
+		}
+
+		File collectionsFile = new File(path);
+
+		if (!collectionsFile.isAbsolute())
+		{
+			collectionsFile = new File(rootDirectory, path);
+		}
+
+		collectionsFile = collectionsFile.getCanonicalFile();
+
+		if (!isWithinRoot(collectionsFile))
+		{
+			return collectionsFile + " isn't under the daemon's root directory " + rootDirectory + ".";
+		}
+
+		job.context = GoBibleCreator.newContext();
+		job.context.reportPhases = true;
+
+		String line;
+
+		while ((line = reader.readLine()) != null && line.trim().length() > 0)
+		{
+			line = line.trim();
+
+			if (line.indexOf(':') <= 0)
+			{
+				return "Property overrides must be of the form Name: Value, not '" + line + "'.";
+			}
+
+			for (String name : COLLECTION_PROPERTIES)
+			{
+				if (line.startsWith(name))
+				{
+					return name.substring(0, name.length() - 1) + " lines can't be overridden.";
+				}
+			}
+
+			for (String name : PATH_PROPERTIES)
+			{
+				if (line.startsWith(name))
+				{
+					// Source-Text and the icon are relative to -d if it was given, and the rest to the Collections file
+					String baseDirectory = job.context.baseSourceDirectory;
+					File file = new File(line.substring(name.length()).trim());
+
+					if (!file.isAbsolute())
+					{
+						file = new File((baseDirectory != null && !name.equals("USFM-ParseConfig:")) ? new File(baseDirectory) : collectionsFile.getParentFile(), file.getPath());
+					}
+
+					if (!isWithinRoot(file.getCanonicalFile()))
+					{
+						return name.substring(0, name.length() - 1) + " must be under the daemon's root directory " + rootDirectory + ".";
+					}
+				}
+			}
+
+			job.context.overrides.add(line);
+		}
+
+		job.collectionsFile = collectionsFile;
+
+		return null;
+	}
+
+	private boolean isWithinRoot(File file)
+	{
+		return file.getPath().startsWith(rootDirectory.getPath().endsWith(File.separator) ? rootDirectory.getPath() : rootDirectory.getPath() + File.separator);
+	}
+
+	/**
+	 * Builds a job sending everything the build prints to the client.
+	 **/
+	private void build(Job job)
+	{
+		PrintStream client = job.client;
+		long startTime = System.nanoTime();
+		boolean succeeded = false;
+
+		System.out.println("Building " + job.collectionsFile + (job.context.overrides.isEmpty() ? "" : " with " + job.context.overrides) + ".");
+
+		try
+		{
+			// The job has been read, the build itself can take as long as it needs
+			job.socket.setSoTimeout(0);
+		}
+		catch (SocketException e)
+		{
+		}
+
+		ThreadConsole.redirect(client);
+
+		try
+		{
+			GoBibleCreator.create(job.collectionsFile, job.context);
+			succeeded = true;
+		}
+		catch (Exception e)
+		{
+			System.out.println("Error: " + e);
+		}
+		finally
+		{
+			System.out.println("Built in " + ((System.nanoTime() - startTime) / 1000000) + " ms.");
+			ThreadConsole.restore();
+		}
+
+		client.println(succeeded ? "Result: OK" : "Result: Failed");
+		client.flush();
+
+		if (client.checkError())
+		{
+			System.out.println("Error: Lost connection with the client building " + job.collectionsFile + ".");
+		}
+
+		if (!succeeded)
+		{
+			System.out.println("Building " + job.collectionsFile + " failed.");
+		}
+
+		close(job.socket);
+	}
+
+	private static void close(Socket socket)
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+			// Closed either way
+		}
+	}
+}
@@ -0,0 +1,271 @@
+//
+//  BuildReport.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Measures the phases of a build and writes them out as a JSON report. For
+ * each phase the wall time, CPU time, bytes allocated and peak heap are
+ * recorded, added up over every time the phase runs. Nothing is measured
+ * unless enable() has been called, see the -t command-line flag.
+ * <p>
+ * A phase is measured by:
+ * <pre>
+ *     BuildReport.Phase phase = BuildReport.start("writeMultipleIndex");
+ *     writeMultipleIndex(...);
+ *     phase.end();
+ * </pre>
+ * CPU time and allocated bytes are those of the thread running the phase,
+ * so phases running at the same time on different threads are measured
+ * separately. The peak heap is for the whole JVM, so it includes whatever
+ * else was running at the same time.
+ * </p>
+ * <p>
+ * Builds whose context has reportPhases set, such as the jobs of the build
+ * daemon, also print the time taken by each phase as soon as it ends.
+ * </p>
+ **/
+public class BuildReport
+{
+	/** Whether phases are being measured. **/
+	private static boolean enabled = false;
+
+	/** Totals of each phase in the order the phases first started. **/
+	private static LinkedHashMap<String, Totals> totals = new LinkedHashMap<String, Totals>();
+
+	/** Number of phases currently running, the peak heap is reset when this becomes 1. **/
+	private static int running = 0;
+
+	private static long startTime;
+
+	private final static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/** Does nothing, returned by start() when not enabled. **/
+	private final static Phase DISABLED = new Phase(null);
+
+	/**
+	 * Starts measuring. Phases started before this are not measured.
+	 **/
+	public static synchronized void enable()
+	{
+		enabled = true;
+		startTime = System.nanoTime();
+
+		if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled())
+		{
+			threads.setThreadCpuTimeEnabled(true);
+		}
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Starts measuring a phase on the current thread.
+	 * @param name Name of the phase, usually the method being measured.
+	 * @return The phase, end() must be called on it when it is finished.
+	 **/
+	public static Phase start(String name)
+	{
+		if (!enabled)
+		{
+			return DISABLED;
+		}
+
+		synchronized (BuildReport.class)
+		{
+			if (++running == 1)
+			{
+				for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				{
+					if (pool.getType() == MemoryType.HEAP)
+					{
+						pool.resetPeakUsage();
+					}
+				}
+			}
+		}
+
+		return new Phase(name);
+	}
+
+	/**
+	 * A phase being measured.
+	 **/
+	public static class Phase
+	{
+		private String name;
+		private long wallStart, cpuStart, allocatedStart;
+
+		private Phase(String name)
+		{
+			this.name = name;
+
+			if (name != null)
+			{
+				wallStart = System.nanoTime();
+				cpuStart = getCpuTime();
+				allocatedStart = getAllocatedBytes();
+			}
+		}
+
+		/**
+		 * Finishes measuring the phase and adds it to the totals.
+		 **/
+		public void end()
+		{
+			if (name == null)
+			{
+				return;
+			}
+
+			long wall = System.nanoTime() - wallStart;
+			long cpu = getCpuTime() - cpuStart;
+			long allocated = getAllocatedBytes() - allocatedStart;
+
+			long peakHeap = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+				{
+					peakHeap += pool.getPeakUsage().getUsed();
+				}
+			}
+
+			synchronized (BuildReport.class)
+			{
+				running--;
+
+				Totals total = totals.get(name);
+
+				if (total == null)
+				{
+					total = new Totals();
+					totals.put(name, total);
+				}
+
+				total.count++;
+				total.wallNanos += wall;
+				total.cpuNanos += cpu;
+				total.allocatedBytes += allocated;
+				total.peakHeapBytes = Math.max(total.peakHeapBytes, peakHeap);
+			}
+
+			if (GoBibleCreator.context().reportPhases)
+			{
+				System.out.println("Phase: " + name + ", " + (wall / 1000000) + " ms"
+					+ (cpuStart != -1 ? ", " + (cpu / 1000000) + " ms CPU" : "") + ".");
+			}
+		}
+	}
+
+	/**
+	 * Writes the report as JSON.
+	 * @param file File to write to.
+	 **/
+	public static synchronized void write(File file) throws IOException
+	{
+		PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+
+		writer.println("{");
+		writer.println("  \"version\": " + quote(GoBibleCreator.versionString) + ",");
+		writer.println("  \"threads\": " + GoBibleCreator.threadCount + ",");
+		writer.println("  \"cpuTimeSupported\": " + (getCpuTime() != -1) + ",");
+		writer.println("  \"allocatedBytesSupported\": " + (getAllocatedBytes() != -1) + ",");
+		writer.println("  \"totalWallNanos\": " + (System.nanoTime() - startTime) + ",");
+		writer.println("  \"maxHeapBytes\": " + Runtime.getRuntime().maxMemory() + ",");
+		writer.println("  \"phases\": [");
+
+		int i = 0;
+		for (Map.Entry<String, Totals> entry : totals.entrySet())
+		{
+			Totals total = entry.getValue();
+
+			writer.print("    {\"name\": " + quote(entry.getKey())
+				+ ", \"count\": " + total.count
+				+ ", \"wallNanos\": " + total.wallNanos
+				+ ", \"cpuNanos\": " + total.cpuNanos
+				+ ", \"allocatedBytes\": " + total.allocatedBytes
+				+ ", \"peakHeapBytes\": " + total.peakHeapBytes + "}");
+			writer.println(++i < totals.size() ? "," : "");
+		}
+
+		writer.println("  ]");
+		writer.println("}");
+		writer.close();
+	}
+
+	/**
+	 * Returns a string as a JSON string literal.
+	 **/
+	private static String quote(String s)
+	{
+		StringBuilder quoted = new StringBuilder("\"");
+
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+
+			if (c == '"' || c == '\\')
+			{
+				quoted.append('\\').append(c);
+			}
+			else if (c < ' ')
+			{
+				quoted.append(String.format("\\u%04x", (int) c));
+			}
+			else
+			{
+				quoted.append(c);
+			}
+		}
+
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Returns the CPU time of the current thread in nanoseconds, or -1 if
+	 * it isn't available.
+	 **/
+	private static long getCpuTime()
+	{
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread so far, or -1 if
+	 * the JVM can't tell.
+	 **/
+	private static long getAllocatedBytes()
+	{
+		if (threads instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+
+			if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled())
+			{
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Totals of a phase.
+	 **/
+	private static class Totals
+	{
+		int count;
+		long wallNanos, cpuNanos, allocatedBytes, peakHeapBytes;
+	}
+}
@@ -0,0 +1,241 @@
+//
+//  FilePacker.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+/**
+ * Decides which of a book's chapters go into each combined Bible Data file.
+ * Chapters are always kept in order, so a plan is just where each new file
+ * starts.
+ * <p>
+ * Go Bible opens a whole file to read any chapter in it, so files much larger
+ * than the target size are slow to load and use a lot of memory, while lots
+ * of small files each cost an extra resource lookup. Two methods are
+ * available, chosen with the File-Packing property in the Collections file:
+ * <ul>
+ * <li>greedy: fills each file in turn and starts a new one when the next
+ * chapter would take it further over the target size than it is under it.
+ * This is what GoBibleCreator has always done, and often leaves a small file
+ * at the end of a book.</li>
+ * <li>optimal: looks at the whole book at once and picks the split that
+ * keeps the file sizes closest to the target, with a small cost for each
+ * extra file.</li>
+ * </ul>
+ * </p>
+ **/
+public class FilePacker
+{
+	public enum Method
+	{
+		greedy,
+		optimal
+	};
+
+	/**
+	 * Cost of each file in the optimal method, as a fraction of the target
+	 * size. Another file is only worth it if it brings the squared
+	 * differences from the target size down by more than this squared.
+	 **/
+	private final static int FILE_COST_DIVISOR = 4;
+
+	/**
+	 * The optimal method doesn't consider files of more than this many times
+	 * the target size, unless the file is a single chapter.
+	 **/
+	private final static int MAX_FILE_MULTIPLE = 2;
+
+	/**
+	 * Works out which file each chapter goes into.
+	 * @param lengths Length in bytes of each chapter, in order.
+	 * @param targetSize Size in bytes each file should be close to.
+	 * @param method Method used to decide.
+	 * @return The file number of each chapter, starting at 0.
+	 **/
+	public static int[] pack(int[] lengths, int targetSize, Method method)
+	{
+		if (method == Method.optimal)
+		{
+			return packOptimal(lengths, targetSize);
+		}
+		else
+		{
+			return packGreedy(lengths, targetSize);
+		}
+	}
+
+	private static int[] packGreedy(int[] lengths, int targetSize)
+	{
+		int[] fileNumbers = new int[lengths.length];
+
+		int fileNumber = 0;
+		int fileLength = 0;
+
+		for (int i = 0; i < lengths.length; i++)
+		{
+			// If this isn't the first chapter for the file and the length of the
+			// next chapter will be greater than the maximum allowed file length
+			// then put this chapter into the next file.
+			if ((fileLength != 0) && ((fileLength + lengths[i] - targetSize) > (targetSize - fileLength)))
+			{
+				fileNumber++;
+				fileLength = 0;
+			}
+
+			fileLength += lengths[i];
+			fileNumbers[i] = fileNumber;
+		}
+
+		return fileNumbers;
+	}
+
+	/**
+	 * Finds the split with the lowest total cost by dynamic programming over
+	 * the chapters: cost[i] is the lowest cost of packing the first i
+	 * chapters, found by trying each possible start of the file holding
+	 * chapter i - 1. A file costs the square of its difference from the
+	 * target size plus the square of the target size / FILE_COST_DIVISOR.
+	 **/
+	private static int[] packOptimal(int[] lengths, int targetSize)
+	{
+		int count = lengths.length;
+		long fileCost = (long) (targetSize / FILE_COST_DIVISOR) * (targetSize / FILE_COST_DIVISOR);
+		long maxFileLength = (long) targetSize * MAX_FILE_MULTIPLE;
+
+		long[] cost = new long[count + 1];
+
+		// Index of the first chapter of the last file in the best packing of the first i chapters
+		int[] fileStart = new int[count + 1];
+
+		for (int i = 1; i <= count; i++)
+		{
+			cost[i] = Long.MAX_VALUE;
+			long fileLength = 0;
+
+			for (int start = i - 1; start >= 0; start--)
+			{
+				fileLength += lengths[start];
+
+				if (fileLength > maxFileLength && start < i - 1)
+				{
+					break;
+				}
+
+				long difference = fileLength - targetSize;
+				long total = cost[start] + difference * difference + fileCost;
+
+				// Prefer fewer, larger files when the costs are equal
+				if (total <= cost[i])
+				{
+					cost[i] = total;
+					fileStart[i] = start;
+				}
+			}
+		}
+
+		// Count the files by following the starts back from the end
+		int fileCount = 0;
+
+		for (int i = count; i > 0; i = fileStart[i])
+		{
+			fileCount++;
+		}
+
+		int[] fileNumbers = new int[count];
+		int fileNumber = fileCount - 1;
+
+		for (int i = count; i > 0; i = fileStart[i])
+		{
+			for (int j = fileStart[i]; j < i; j++)
+			{
+				fileNumbers[j] = fileNumber;
+			}
+
+			fileNumber--;
+		}
+
+		return fileNumbers;
+	}
+
+	/**
+	 * Collects the sizes of the files written for a collection so that their
+	 * distribution can be reported.
+	 **/
+	public static class Sizes
+	{
+		private int targetSize;
+
+		private int count;
+		private long total;
+		private long totalSquared;
+		private int smallest = Integer.MAX_VALUE;
+		private int largest;
+
+		/** Number of files in each quarter of the target size, the last counts everything from 1.5 times. **/
+		private int[] quarters = new int[7];
+
+		public Sizes(int targetSize)
+		{
+			this.targetSize = targetSize;
+		}
+
+		public void add(int size)
+		{
+			count++;
+			total += size;
+			totalSquared += (long) size * size;
+			smallest = Math.min(smallest, size);
+			largest = Math.max(largest, size);
+			quarters[(int) Math.min(quarters.length - 1, (long) size * 4 / targetSize)]++;
+		}
+
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * Describes the distribution over two lines, eg:
+		 * <pre>
+		 * 42 data file(s) of 24576 bytes target: smallest 3102, largest 31877, mean 22894, standard deviation 4120.
+		 * Files by % of target: 0-25%: 1, 25-50%: 0, 50-75%: 3, 75-100%: 20, 100-125%: 18, 125-150%: 0, 150%+: 0
+		 * </pre>
+		 **/
+		public String toString()
+		{
+			if (count == 0)
+			{
+				return "No data files.";
+			}
+
+			double mean = (double) total / count;
+			double deviation = Math.sqrt(Math.max(0, (double) totalSquared / count - mean * mean));
+
+			StringBuilder s = new StringBuilder();
+			s.append(count + " data file(s) of " + targetSize + " bytes target: smallest " + smallest + ", largest " + largest
+				+ ", mean " + Math.round(mean) + ", standard deviation " + Math.round(deviation) + ".\n");
+			s.append("Files by % of target: ");
+
+			for (int i = 0; i < quarters.length; i++)
+			{
+				if (i > 0)
+				{
+					s.append(", ");
+				}
+
+				if (i < quarters.length - 1)
+				{
+					s.append((i * 25) + "-" + ((i + 1) * 25) + "%: " + quarters[i]);
+				}
+				else
+				{
+					s.append((i * 25) + "%+: " + quarters[i]);
+				}
+			}
+
+			return s.toString();
+		}
+	}
+}
@@ -12,10 +12,12 @@ import java.awt.geom.*;
 import java.awt.image.*;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.*;
 import javax.imageio.*;
 import jolon.xml.*;
 import java.util.zip.*;
+import javax.xml.stream.XMLStreamException;
 
 import usfm.*;
 
@@ -75,9 +77,20 @@ public abstract class GoBibleCreator
 	/** Combines multiple chapters into a single file. File size will be approximately MAX_FILE_SIZE. **/
 	public final static boolean COMBINED_CHAPTERS = true;
 	
-	/** If COMBINED_CHAPTERS = true then this represents the approximate file size of the combined chapters. **/
+	/** If COMBINED_CHAPTERS = true then this represents the approximate file size of the combined chapters in UTF-8 bytes. **/
 	public final static int MAX_FILE_SIZE_MIDP_2 = 24 << 10;
 	public final static int MAX_FILE_SIZE_MIDP_1 = 4 << 10;
+	public final static int MAX_FILE_SIZE_LOW_MEMORY = 8 << 10;
+	public final static int MAX_FILE_SIZE_HIGH_MEMORY = 64 << 10;
+	
+	/** Device profiles that can be given to the Data-File-Size property instead of a size. **/
+	public final static String[] DATA_FILE_SIZE_PROFILES = {"MIDP-1", "Low-Memory", "MIDP-2", "High-Memory"};
+	
+	/** Sizes of the DATA_FILE_SIZE_PROFILES. **/
+	public final static int[] DATA_FILE_SIZE_PROFILE_SIZES = {MAX_FILE_SIZE_MIDP_1, MAX_FILE_SIZE_LOW_MEMORY, MAX_FILE_SIZE_MIDP_2, MAX_FILE_SIZE_HIGH_MEMORY};
+	
+	/** Manifest attribute recording the MAX_FILE_SIZE a collection's data files were written with. **/
+	public final static String DATA_FILE_SIZE_ATTRIBUTE = "Go-Bible-Data-File-Size";
 	
 	/** Go Bible text alignment: LEFT. **/
 	public final static int ALIGN_LEFT = 0;
@@ -97,8 +110,6 @@ public abstract class GoBibleCreator
 	/** MIDP version in the manifest and JAD. **/
 	public static String versionString = "2." + SUB_VERSION;
 	
-	public static int MAX_FILE_SIZE = MAX_FILE_SIZE_MIDP_2;
-	
 	/**
 	 * By default GoBibleCreator parses the source text and generates the verse
 	 * data which is stored in the JAR files. This is a time consuming process
@@ -110,74 +121,14 @@ public abstract class GoBibleCreator
 	 */
 	protected static boolean updateOnly = false;
 	
-	/** Location of WAP site where JAD files will be placed. 
-		If no 'Wap-site:' attribute is specified in the Collections file then no WAP files will be 
-		produced. **/
-	protected static String wapSite = null;
-	
-	/** URL to be used in MIDlet-Info-URL **/
-	protected static String midlet_infoURL = null;
-
-	/** value to be used in MIDlet-Vendor **/
-	protected static String midlet_vendor = null;
-
-	/** Info string. **/
-	protected static String infoString = null;
-
-	/** Custom font string. **/
-	protected static String customFontString = null;
-	
-	/** Text alignment. **/
-	protected static int align = ALIGN_LEFT;
-	
-	/** Language Code appended to Collection names. eg. Ar, Zh, En, etc. **/
-	protected static String languageCode = "";
 	public enum languageCodePositionType
 	{
 		prefix,
 		suffix,
 	};
-	protected static languageCodePositionType languageCodePosition;
 
-	/** Contains the contents of the English UI properties file and
-		non-English UI strings specified in the Collections file.
-        **/	
-	protected static HashMap uiProperties = new HashMap();
-	
-	/** Identical to the keys used in the books HashMap except retains the order
-	    of books from the XML file (the HashMap does not retain order).
-		@see parseBooks **/
-	protected static Vector<String> bookNames = new Vector<String>();
-	
-	/**
-	 * This will be prepended to the Source-Text path in the Collections.txt file.
-	 * Can be set through the -d parameter.
-	 */
-	protected static String baseSourceDirectory = null;
-
-        // the extension that is used by the USFMr files
-        // introduced in version 2.3
-        protected static String usfmSourceFileExtension = null;
-        // file to help parse USFM
-        // introduced in version 2.4.6
-        protected static String usfmParseConfigFile = "USFMSettings.txt";
-        // the file path (relative to the baseSource directory) to an alternate 
-        // icon that will display on the phone
-        // introduced in version 2.3
-        protected static String phoneIconFilepath = null;        
-        //the USFM file codepage for the source files
-        // introduced in version 2.3
-        protected static String fileCodepage = null;
-        // alternate name for the application that will be displayed in the 
-        // phone's title
-        // introduced in version 2.3
-        protected static String applicationName = null;
-        // flag to determine if red lettering is used
-        // introduced in version 2.3
-	protected static boolean useRedLettering = true;
         // listing of the possible types of supported source file formats
         // introduced in version 2.3
-        protected static String sTitleTag = "\\h";
         public enum SourceFormatType
         {
             osis,
@@ -185,11 +136,55 @@ public abstract class GoBibleCreator
             usfm,
             unknown  
         };
-        // introduced in version 2.3
-        protected static SourceFormatType sourceFormatType;
-        
-	/** Empty-Verse-Text string. **/
-	protected static String EmptyVerseString = null;
+
+	/**
+	 * Directory that the Source-Text path in the Collections file is
+	 * relative to, set through the -d parameter. If null each build uses the
+	 * directory of its Collections file.
+	 */
+	protected static String baseSourceDirectoryOption = null;
+
+	/** Context of the build running on each thread, see context(). **/
+	private final static ThreadLocal<BuildContext> contexts = new ThreadLocal<BuildContext>();
+
+	/** Context for threads that aren't running a build, eg when called from the benchmarks. **/
+	private final static BuildContext defaultContext = new BuildContext(null);
+
+	/**
+	 * Number of Collections files built at the same time. Set with the -p
+	 * parameter, where 0 means one per processor. Defaults to 1 which builds
+	 * each Collections file as soon as it is read from the command line.
+	 */
+	protected static int buildCount = 1;
+
+	/**
+	 * Number of threads used to parse USFM books and to write collections.
+	 * Set with the -j parameter, where 0 means one thread per processor.
+	 * Defaults to 1 which does everything one after another.
+	 */
+	protected static int threadCount = 1;
+
+	/**
+	 * Directory where parsed books are kept so that unchanged source files
+	 * don't need to be parsed again, see BookCache. Set with the -c parameter,
+	 * no cache is used if null.
+	 */
+	protected static String cacheDirectory = null;
+
+	/**
+	 * File to write the JSON report of the time and memory taken by each
+	 * phase of the build to, see BuildReport. Set with the -t parameter.
+	 */
+	protected static String reportFile = null;
+
+	/** Compressed entries of the JARs copied by copyInContentsOfJar(), see getRawJarEntries(). **/
+	private static WeakHashMap<JarFile, HashMap<String, RawJarEntry>> rawJarEntries = new WeakHashMap<JarFile, HashMap<String, RawJarEntry>>();
+
+	/** GoBibleCore JARs opened so far, shared by every build, see getGoBibleJar(). **/
+	private static HashMap<File, JarFile> goBibleJars = new HashMap<File, JarFile>();
+
+	/** GoBibleCore's ui.properties, read by the first build that needs them, see parseUiProperties(). **/
+	private static HashMap<String, String> coreUiProperties = null;
         
 	/** 
 	 * The starting point. 
@@ -214,6 +209,15 @@ public abstract class GoBibleCreator
         else 
         {
 
+            // Collections files waiting to be built when building several at a time
+            Vector<File> pendingBuilds = new Vector<File>();
+
+            // Port to listen for builds on when running as a daemon, see BuildDaemon
+            int daemonPort = -1;
+
+            // Directory that the daemon's Collections files must be within
+            File daemonRoot = new File(".");
+
             for (int i=0; i < args.length; i++) {
                 String arg = args[i];
                 String nextArg = (i < args.length - 1) ? args[i+1] : null;
@@ -251,11 +255,106 @@ public abstract class GoBibleCreator
                 else if (arg.equals("-d"))
                 {
                     if (nextArg != null) {
-                        baseSourceDirectory = nextArg;
+                        baseSourceDirectoryOption = nextArg;
                         i++;
                     }
                     System.out.println(" ** The \"Directory\"(-d) flag has been found.");
-                    System.out.println(" ** Using <" + baseSourceDirectory + "> as the base Source Directory.");
+                    System.out.println(" ** Using <" + baseSourceDirectoryOption + "> as the base Source Directory.");
+                }
+                else if (arg.equals("-j"))
+                {
+                    if (nextArg == null || !nextArg.matches("[0-9]{1,9}")) {
+                        System.out.println("Error: The \"Threads\"(-j) flag must be followed by the number of threads, or 0 for one per processor.");
+                        System.out.println("Usage: java -jar GoBibleCreator.jar -j threads CollectionsFilePath");
+                        return;
+                    }
+                    threadCount = Integer.parseInt(nextArg);
+                    i++;
+                    if (threadCount <= 0) {
+                        threadCount = Runtime.getRuntime().availableProcessors();
+                    }
+                    System.out.println(" ** The \"Threads\"(-j) flag has been found.");
+                    System.out.println(" ** Using " + threadCount + " thread(s).");
+                }
+                else if (arg.equals("-t"))
+                {
+                    // The report overwrites the file, so only accept a path meant for it
+                    if (nextArg == null || nextArg.startsWith("-") || !nextArg.toLowerCase().endsWith(".json")) {
+                        System.out.println("Error: The \"Timing\"(-t) flag must be followed by the path of the report to write, ending in .json.");
+                        System.out.println("Usage: java -jar GoBibleCreator.jar -t report.json CollectionsFilePath");
+                        return;
+                    }
+                    reportFile = nextArg;
+                    i++;
+                    BuildReport.enable();
+                    System.out.println(" ** The \"Timing\"(-t) flag has been found.");
+                    System.out.println(" ** Writing the time taken by each phase of the build to <" + reportFile + ">.");
+                }
+                else if (arg.equals("-p"))
+                {
+                    if (nextArg == null || !nextArg.matches("[0-9]{1,9}")) {
+                        System.out.println("Error: The \"Parallel builds\"(-p) flag must be followed by the number of builds, or 0 for one per processor.");
+                        System.out.println("Usage: java -jar GoBibleCreator.jar -p builds CollectionsFilePath...");
+                        return;
+                    }
+                    buildCount = Integer.parseInt(nextArg);
+                    i++;
+                    if (buildCount <= 0) {
+                        buildCount = Runtime.getRuntime().availableProcessors();
+                    }
+                    System.out.println(" ** The \"Parallel builds\"(-p) flag has been found.");
+                    System.out.println(" ** Building " + buildCount + " Collections file(s) at a time.");
+                }
+                else if (arg.equals("-b"))
+                {
+                    if (nextArg != null) {
+                        i++;
+                        System.out.println(" ** The \"Batch\"(-b) flag has been found.");
+                        System.out.println(" ** Building the Collections files listed in <" + nextArg + ">.");
+                        
+                        for (File collectionsFile : readBatchFile(new File(nextArg)))
+                        {
+                            if (buildCount > 1)
+                            {
+                                pendingBuilds.add(collectionsFile);
+                            }
+                            else
+                            {
+                                create(collectionsFile);
+                            }
+                        }
+                    }
+                }
+                else if (arg.equals("-s"))
+                {
+                    daemonPort = BuildDaemon.DEFAULT_PORT;
+                    if (nextArg != null && nextArg.matches("[0-9]+")) {
+                        daemonPort = Integer.parseInt(nextArg);
+                        i++;
+                    }
+                    System.out.println(" ** The \"Server\"(-s) flag has been found.");
+                    System.out.println(" ** Building Collections files sent to port " + daemonPort + " once the others are built.");
+                }
+                else if (arg.equals("-r"))
+                {
+                    if (nextArg == null || nextArg.startsWith("-")) {
+                        System.out.println("Error: The \"Root\"(-r) flag must be followed by a directory.");
+                        System.out.println("Usage: java -jar GoBibleCreator.jar -s [port] -r RootDirectory");
+                        return;
+                    }
+                    daemonRoot = new File(nextArg);
+                    i++;
+                    System.out.println(" ** The \"Root\"(-r) flag has been found.");
+                    System.out.println(" ** Only building Collections files under <" + daemonRoot + "> sent to the daemon.");
+                }
+                else if (arg.equals("-c"))
+                {
+                    if (nextArg != null) {
+                        cacheDirectory = nextArg;
+                        i++;
+                    }
+                    System.out.println(" ** The \"Cache\"(-c) flag has been found.");
+                    System.out.println(" ** Using <" + cacheDirectory + "> as the cache directory for parsed books.");
                 }
                 else if ((arg.toLowerCase().endsWith(".xml")
                                 || arg.toLowerCase().endsWith(".thm")
@@ -271,11 +370,36 @@ public abstract class GoBibleCreator
                                 generateCollectionsFile(new File(xmlFile.getParent(), "Collections.txt"), xmlFile.getName(), books);
                         }
                 }
+                else if (buildCount > 1)
+                {
+                        // Built together with the others once all of the arguments are read
+                        pendingBuilds.add(new File(arg));
+                }
                 else
                 {
                         create(new File(arg));
                 }
             }
+
+            if (pendingBuilds.size() > 0)
+            {
+                createAll(pendingBuilds);
+            }
+
+            if (daemonPort != -1)
+            {
+                if (!daemonRoot.isDirectory())
+                {
+                    System.out.println("Error: The daemon's root directory <" + daemonRoot + "> doesn't exist.");
+                    return;
+                }
+                new BuildDaemon(daemonPort, buildCount, daemonRoot).run();
+            }
+
+            if (reportFile != null)
+            {
+                BuildReport.write(new File(reportFile));
+            }
         }
     }
     /*
@@ -298,21 +422,191 @@ public abstract class GoBibleCreator
 	private static void UpdateBaseSourceDirectory(File collectionsFile)
 	{
 		// Base source directory can be overridden with the -d argument
-		if (baseSourceDirectory == null)
+		if (context().baseSourceDirectory == null)
 		{
 			// By default the sourceTextPath is relative to the collectionsFile
 			//baseSourceDirectory = "" + collectionsFile.getParent();
-			baseSourceDirectory = collectionsFile.getAbsolutePath();
-			baseSourceDirectory = baseSourceDirectory.substring(0, baseSourceDirectory.length() - collectionsFile.getName().length());
+			context().baseSourceDirectory = collectionsFile.getAbsolutePath();
+			context().baseSourceDirectory = context().baseSourceDirectory.substring(0, context().baseSourceDirectory.length() - collectionsFile.getName().length());
 		}
 	}
 
+	/**
+	 * Returns the settings and state of the build running on the current
+	 * thread.
+	 **/
+	public static BuildContext context()
+	{
+		BuildContext context = contexts.get();
+		
+		return (context != null) ? context : defaultContext;
+	}
+	
+	/**
+	 * Returns a context for a new build with the settings given on the
+	 * command line.
+	 **/
+	public static BuildContext newContext()
+	{
+		return new BuildContext(baseSourceDirectoryOption);
+	}
+	
+	/**
+	 * Makes the current thread part of a build, eg a thread working on the
+	 * build in parallel.
+	 * @param context The build's context, or null when the thread's work on
+	 * it is finished.
+	 **/
+	static void setContext(BuildContext context)
+	{
+		if (context != null)
+		{
+			contexts.set(context);
+		}
+		else
+		{
+			contexts.remove();
+		}
+	}
+	
 	/**
 	 * Parses the XML and collection files and writes out the Go Bible data
-	 * files in the same directory as the collection files.
+	 * files in the same directory as the collection files. Each call is a
+	 * separate build with its own BuildContext, so nothing read from one
+	 * Collections file affects the next.
 	 * @param collectionsFile Collections File
 	 */
 	public static void create(File collectionsFile) throws IOException
+	{
+		create(collectionsFile, newContext());
+	}
+	
+	/**
+	 * Builds a Collections file with the specified context, see create().
+	 * @param collectionsFile Collections File
+	 * @param context New context for the build, see newContext().
+	 */
+	public static void create(File collectionsFile, BuildContext context) throws IOException
+	{
+		BuildContext previous = contexts.get();
+		setContext(context);
+		
+		try
+		{
+			build(collectionsFile);
+		}
+		finally
+		{
+			setContext(previous);
+		}
+	}
+	
+	/**
+	 * Builds several Collections files, buildCount of them at a time. Each
+	 * build's console output is captured and printed in the order the files
+	 * were given. A build that fails is reported and the others carry on.
+	 **/
+	public static void createAll(Vector<File> collectionsFiles) throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(buildCount);
+		Vector<Future<Object>> results = new Vector<Future<Object>>();
+		Vector<ByteArrayOutputStream> outputs = new Vector<ByteArrayOutputStream>();
+		
+		try
+		{
+			for (final File collectionsFile : collectionsFiles)
+			{
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				
+				results.add(executor.submit(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						ThreadConsole.redirect(output);
+						try
+						{
+							create(collectionsFile);
+						}
+						finally
+						{
+							ThreadConsole.restore();
+						}
+						return null;
+					}
+				}));
+				outputs.add(output);
+			}
+			
+			for (int i = 0; i < results.size(); i++)
+			{
+				try
+				{
+					results.get(i).get();
+					ThreadConsole.replay(outputs.get(i));
+				}
+				catch (InterruptedException e)
+				{
+					throw new InterruptedIOException(e.getMessage());
+				}
+				catch (ExecutionException e)
+				{
+					ThreadConsole.replay(outputs.get(i));
+					System.out.println("Error: Building " + collectionsFiles.get(i) + " failed: " + e.getCause());
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Reads the list of Collections files given with the -b parameter, one
+	 * per line. Blank lines and lines starting with # are ignored. Relative
+	 * paths are relative to the directory of the list.
+	 **/
+	public static Vector<File> readBatchFile(File batchFile) throws IOException
+	{
+		Vector<File> collectionsFiles = new Vector<File>();
+		
+		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(batchFile), "UTF-8"));
+		
+		try
+		{
+			String line;
+			
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				
+				if (line.length() == 0 || line.startsWith("#"))
+				{
+					continue;
+				}
+				
+				File collectionsFile = new File(line);
+				
+				if (!collectionsFile.isAbsolute())
+				{
+					collectionsFile = new File(batchFile.getAbsoluteFile().getParentFile(), line);
+				}
+				
+				collectionsFiles.add(collectionsFile);
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		return collectionsFiles;
+	}
+	
+	/**
+	 * Builds a Collections file in the current thread's context, see create().
+	 **/
+	private static void build(File collectionsFile) throws IOException
 	{		
 		HashMap books = null;
 		
@@ -324,13 +618,13 @@ public abstract class GoBibleCreator
 			String sourceTextPath = extractSourceTextPath(collectionsFile);
 
             // Extract the source file type from the collectionsFile property: SourceFormat
-            sourceFormatType = extractSourceFormatType(collectionsFile);
-            if (sourceFormatType.equals(SourceFormatType.unknown))
+            context().sourceFormatType = extractSourceFormatType(collectionsFile);
+            if (context().sourceFormatType.equals(SourceFormatType.unknown))
             {
                 //do extra testing on the file to see if the format can be determined
                 //this is for backward compatibility for GBC 2.2.6 version and prior
                 //which did not specify the Source-Format property
-                sourceFormatType = SourceFormatTypeRetry(baseSourceDirectory, sourceTextPath);
+                context().sourceFormatType = SourceFormatTypeRetry(context().baseSourceDirectory, sourceTextPath);
             }
 
 			// Base source directory can be overridden with the -d argument
@@ -342,23 +636,51 @@ public abstract class GoBibleCreator
                 baseSourceDirectory = collectionsFile.getAbsolutePath();
                 baseSourceDirectory = baseSourceDirectory.substring(0, baseSourceDirectory.length() - collectionsFile.getName().length());
 			}*/
-			if (sourceFormatType == SourceFormatType.osis
-                || sourceFormatType == SourceFormatType.thml)
+			if (context().sourceFormatType == SourceFormatType.osis)
             {
-                File xmlFile = new File(baseSourceDirectory, sourceTextPath);
-                books = parseXml(xmlFile);
+                File xmlFile = new File(context().baseSourceDirectory, sourceTextPath);
+                BuildReport.Phase phase = BuildReport.start("parseXml");
+                try
+                {
+                    books = parseXmlCached(xmlFile);
+                }
+                finally
+                {
+                    phase.end();
+                }
+            }
+            else if (context().sourceFormatType == SourceFormatType.thml)
+            {
+                File xmlFile = new File(context().baseSourceDirectory, sourceTextPath);
+                BuildReport.Phase phase = BuildReport.start("parseXml");
+                try
+                {
+                    books = parseXmlCached(xmlFile);
+                }
+                finally
+                {
+                    phase.end();
+                }
             }
-            else if (sourceFormatType == SourceFormatType.usfm)
+            else if (context().sourceFormatType == SourceFormatType.usfm)
             {
                 extractCommonFields(collectionsFile);
                 //make sure that the file extension is retrieved
                 extractUSFMfields(collectionsFile);
-                books = parseUSFM(collectionsFile, baseSourceDirectory, sourceTextPath, sTitleTag);
+                BuildReport.Phase phase = BuildReport.start("parseUSFM");
+                try
+                {
+                    books = parseUSFM(collectionsFile, context().baseSourceDirectory, sourceTextPath, context().sTitleTag);
+                }
+                finally
+                {
+                    phase.end();
+                }
             }
             else
             {
                 //dump out message saying that it cannot determine the file format type
-                System.out.println("Error: Could not determine Bible format type, " + sourceFormatType + ".  Please use the 'Source-Format'");
+                System.out.println("Error: Could not determine Bible format type, " + context().sourceFormatType + ".  Please use the 'Source-Format'");
                 System.out.println("property in your collections file.");
                 return;
             }
@@ -375,11 +697,28 @@ public abstract class GoBibleCreator
 			parseUiProperties();
 			
 			// Parse the collections file
-			Vector collections = parseCollectionsFile(collectionsFile, books);
+			Vector collections;
+			BuildReport.Phase phase = BuildReport.start("parseCollectionsFile");
+			try
+			{
+				collections = parseCollectionsFile(collectionsFile, books);
+			}
+			finally
+			{
+				phase.end();
+			}
 			
-			if (customFontString != null)
+			if (context().customFontString != null)
 			{
-				generateCustomFont(customFontString, collectionsFile, books);
+				phase = BuildReport.start("generateCustomFont");
+				try
+				{
+					generateCustomFont(context().customFontString, collectionsFile, books);
+				}
+				finally
+				{
+					phase.end();
+				}
 			}
 			
 			// Open GoBibleCore based on MIDP version 
@@ -397,13 +736,39 @@ public abstract class GoBibleCreator
 			File jarDirectory = getJarDirectory();
 			File jarFile = new File(jarDirectory, goBibleJarFileName);
 			
-			JarFile goBibleJar = new JarFile(jarFile);
+			JarFile goBibleJar = getGoBibleJar(jarFile);
 			
 			// Write out the Go Bible data files into the same directory as the collections file
-			writeCollections(collectionsFile.getParentFile(), collections, books, goBibleJar);
+			phase = BuildReport.start("writeCollections");
+			try
+			{
+				writeCollections(collectionsFile.getParentFile(), collections, books, goBibleJar);
+			}
+			finally
+			{
+				phase.end();
+			}
 		}
 	}
 	
+	/**
+	 * Opens a GoBibleCore JAR, or returns it if it is already open. The JAR is
+	 * only read from, so every build shares the one JarFile along with its
+	 * entries cached by getRawJarEntries().
+	 */
+	private static synchronized JarFile getGoBibleJar(File jarFile) throws IOException
+	{
+		JarFile goBibleJar = goBibleJars.get(jarFile);
+		
+		if (goBibleJar == null)
+		{
+			goBibleJar = new JarFile(jarFile);
+			goBibleJars.put(jarFile, goBibleJar);
+		}
+		
+		return goBibleJar;
+	}
+	
 	/**
 	 * @return The directory containing the GoBibleCreator.jar file that is being executed.
 	 */
@@ -429,12 +794,73 @@ public abstract class GoBibleCreator
 		return null;
 	}
 	
+	/**
+	 * Opens the Collections file for reading one line at a time in UTF-8
+	 * character encoding, with the build's overrides in place of the lines
+	 * setting the same properties. Overrides for properties that the file
+	 * doesn't set are added before its first collection.
+	 */
+	static LineNumberReader openCollectionsFile(File collectionsFile) throws IOException
+	{
+		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		Vector<String> overrides = context().overrides;
+		
+		if (overrides.isEmpty())
+		{
+			return reader;
+		}
+		
+		HashSet<String> overriddenNames = new HashSet<String>();
+		StringBuilder overrideLines = new StringBuilder();
+		
+		for (String override : overrides)
+		{
+			overriddenNames.add(override.substring(0, override.indexOf(':') + 1));
+			overrideLines.append(override).append('\n');
+		}
+		
+		StringBuilder text = new StringBuilder();
+		boolean inserted = false;
+		
+		try
+		{
+			String line;
+			
+			while ((line = reader.readLine()) != null)
+			{
+				boolean overridden = overriddenNames.contains(line.substring(0, line.indexOf(':') + 1));
+				
+				if (!inserted && (overridden || line.startsWith("Collection:")))
+				{
+					text.append(overrideLines);
+					inserted = true;
+				}
+				
+				if (!overridden)
+				{
+					text.append(line).append('\n');
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		
+		if (!inserted)
+		{
+			text.append(overrideLines);
+		}
+		
+		return new LineNumberReader(new StringReader(text.toString()));
+	}
+	
 	public static String extractSourceTextPath(File collectionsFile) throws IOException
 	{
 		String sourceTextPath = null;
 		
 		// Open the file for reading one line at a time in UTF-8 character encoding
-		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		LineNumberReader reader = openCollectionsFile(collectionsFile);
 		
 		String line = null;
 		String sourceTextPropertyName = "Source-Text:";
@@ -473,7 +899,7 @@ public abstract class GoBibleCreator
 		SourceFormatType srcFormatType = SourceFormatType.unknown;
 		
 		// Open the file for reading one line at a time in UTF-8 character encoding
-		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		LineNumberReader reader = openCollectionsFile(collectionsFile);
 		
 		String line = null;
 		String sourceTextPropertyName = "Source-Format:";
@@ -507,7 +933,7 @@ public abstract class GoBibleCreator
 	public static void extractUSFMfields(File collectionsFile) throws IOException
 	{
 		// Open the file for reading one line at a time in UTF-8 character encoding
-		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		LineNumberReader reader = openCollectionsFile(collectionsFile);
 
 		String line = null;
 		// Read the collections in the file
@@ -516,20 +942,20 @@ public abstract class GoBibleCreator
                     // Test if line contains the source text property
                     if (line.startsWith("Source-FileExtension:"))
                     {
-                        usfmSourceFileExtension =  line.substring("Source-FileExtension:".length()).trim().toLowerCase();
+                        context().usfmSourceFileExtension =  line.substring("Source-FileExtension:".length()).trim().toLowerCase();
                         //check for starting period and strip off
-                        usfmSourceFileExtension = usfmSourceFileExtension.replaceAll("\\.", "");
+                        context().usfmSourceFileExtension = context().usfmSourceFileExtension.replaceAll("\\.", "");
                     }
                     if (line.startsWith("USFM-TitleTag:"))
                     {
-                        sTitleTag  =  line.substring("USFM-TitleTag:".length()).trim().toLowerCase();
+                        context().sTitleTag  =  line.substring("USFM-TitleTag:".length()).trim().toLowerCase();
                     }
                     if (line.startsWith("RedLettering:"))
                     {
                         //defaults to true
                         if (line.toLowerCase().indexOf("false") > 0 || line.toLowerCase().indexOf("no") > 0)
                         {
-                            useRedLettering = false;
+                            context().useRedLettering = false;
                         }
                     }
 		}
@@ -548,7 +974,7 @@ public abstract class GoBibleCreator
 	public static void extractCommonFields(File collectionsFile) throws IOException
 	{
 		// Open the file for reading one line at a time in UTF-8 character encoding
-		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		LineNumberReader reader = openCollectionsFile(collectionsFile);
 
 		String line = null;
 		// Read the collections in the file
@@ -559,17 +985,17 @@ public abstract class GoBibleCreator
 				//defaults to true
 				if (line.toLowerCase().indexOf("false") > 0 || line.toLowerCase().indexOf("no") > 0)
 				{
-					useRedLettering = false;
+					context().useRedLettering = false;
 				}
 			}
 			// Empth verse text
 			else if (line.startsWith("Empty-Verse-Text:"))
 			{
 				// Grab text to display where the verse text is missing
-				EmptyVerseString = line.substring(17).trim();
+				context().EmptyVerseString = line.substring(17).trim();
 			}
 			else if (line.startsWith("USFM-ParseConfig:")) {
-			    GoBibleCreator.usfmParseConfigFile = line.substring("USFM-ParseConfig:".length()).trim();
+			    GoBibleCreator.context().usfmParseConfigFile = line.substring("USFM-ParseConfig:".length()).trim();
 			}
 		}
 		reader.close();
@@ -655,19 +1081,129 @@ public abstract class GoBibleCreator
 
 			if (parent != null)
 			{
-				creator = new ThmlConverter();
+				creator = new ThmlConverter();
+			}
+			else
+			{
+				System.out.println("Error: XML file does not contain OSIS or ThML content: " + xmlFile.getName());
+				return null;
+			}
+		}
+		
+		HashMap books = creator.parse(parent);
+		
+		return books;
+	}
+
+	/**
+	 * Parses an OSIS file without building an XMLObject tree of the whole
+	 * file, see OsisStreamConverter. Falls back to parseXml if the file
+	 * isn't well formed enough to be streamed, or turns out not to be OSIS.
+	 */
+	public static HashMap parseOsisStream(File xmlFile) throws IOException
+	{
+		System.out.println("Streaming " + xmlFile.getName() + " from OSIS format...");
+		
+		// Books added by a failed attempt have to be forgotten again
+		int bookCount = context().bookNames.size();
+		HashMap books = null;
+		
+		try
+		{
+			books = new OsisStreamConverter().parse(xmlFile);
+		}
+		catch (XMLStreamException e)
+		{
+			System.out.println("Warning: " + xmlFile.getName() + " could not be streamed: " + e.getMessage());
+		}
+		
+		if (books == null)
+		{
+			context().bookNames.setSize(bookCount);
+			return parseXml(xmlFile);
+		}
+		
+		System.out.println("Streaming " + xmlFile.getName() + " complete.");
+		
+		return books;
+	}
+
+	/**
+	 * Parses an OSIS or ThML file according to sourceFormatType. If a cache
+	 * directory has been given and the file has been parsed before with the
+	 * same settings then the books are loaded from the cache instead.
+	 */
+	public static HashMap parseXmlCached(File xmlFile) throws IOException
+	{
+		BookCache cache = openBookCache(new File[0]);
+		String key = null;
+		
+		if (cache != null)
+		{
+			key = cache.getKey(xmlFile);
+			Vector<Book> cachedBooks = cache.load(key);
+			
+			if (cachedBooks != null)
+			{
+				System.out.println("Loaded " + xmlFile.getName() + " from the cache.");
+				
+				HashMap books = new HashMap();
+				for (Book book : cachedBooks)
+				{
+					books.put(book.name, book);
+					context().bookNames.add(book.name);
+				}
+				
+				return books;
 			}
-			else
+		}
+		
+		int bookCount = context().bookNames.size();
+		HashMap books = (context().sourceFormatType == SourceFormatType.osis) ? parseOsisStream(xmlFile) : parseXml(xmlFile);
+		
+		if (cache != null && books != null)
+		{
+			// Store the books in the order they were found
+			Vector<Book> parsedBooks = new Vector<Book>();
+			for (int i = bookCount; i < context().bookNames.size(); i++)
 			{
-				System.out.println("Error: XML file does not contain OSIS or ThML content: " + xmlFile.getName());
-				return null;
+				parsedBooks.add((Book) books.get(context().bookNames.get(i)));
 			}
+			
+			cache.store(key, parsedBooks);
 		}
 		
-		HashMap books = creator.parse(parent);
-		
 		return books;
 	}
+	
+	/**
+	 * Opens the cache in cacheDirectory for the current parse settings.
+	 * @param configFiles Configuration files read by the parser.
+	 * @return The cache or null if there is no cache directory or it can't be used.
+	 */
+	private static BookCache openBookCache(File[] configFiles)
+	{
+		if (cacheDirectory == null)
+		{
+			return null;
+		}
+		
+		String settings = "Source-Format: " + context().sourceFormatType + "\n"
+			+ "Codepage: " + context().fileCodepage + "\n"
+			+ "RedLettering: " + context().useRedLettering + " " + (int) STYLE_RED + "\n"
+			+ "Empty-Verse-Text: " + context().EmptyVerseString + "\n"
+			+ "USFM-TitleTag: " + context().sTitleTag;
+		
+		try
+		{
+			return new BookCache(new File(cacheDirectory), settings, configFiles);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Warning: Not using the cache: " + e.getMessage());
+			return null;
+		}
+	}
 
         /*
 	 * Parses the USFM files format and extracts and returns
@@ -692,48 +1228,44 @@ public abstract class GoBibleCreator
                 //get the list of files in the directory
                 File folder = new File(baseSourceDirectory, sourceTextPath);
                 File[] listOfFiles = folder.listFiles();
+                Vector<File> sourceFiles = new Vector<File>();
 
                 for (int i = 0; i < listOfFiles.length; i++) 
                 {
                   if (listOfFiles[i].isFile()) 
                   {
                       String sFileName = listOfFiles[i].getName();
-                      if (sFileName.toLowerCase().endsWith("." + usfmSourceFileExtension))
+                      if (sFileName.toLowerCase().endsWith("." + context().usfmSourceFileExtension))
                       {
-                          System.out.println("File " + listOfFiles[i].getName());
-                          String sFilename = folder.toString() + File.separator + listOfFiles[i].getName();
+                          sourceFiles.add(listOfFiles[i]);
+                      }
+                  } 
+                }
+
+                BookCache cache = openBookCache(new File[] {new File(collectionsFile.getParent(), context().usfmParseConfigFile)});
+
+                if (threadCount > 1 && sourceFiles.size() > 1)
+                {
+                    parseUSFMParallel(collectionsFile, folder, sourceFiles, sTitleTag, books, cache);
+                }
+                else
+                {
+                    for (File file : sourceFiles)
+                    {
+                          System.out.println("File " + file.getName());
                           // Add book to the lookup table
                           try
                           {
 				// Create a new book
-				Book book = new Book(collectionsFile, sFilename, STYLE_RED, fileCodepage, useRedLettering, sTitleTag);
-				book.fileName = listOfFiles[i].getName();
-
-				books.put(book.name, book);
-
-                                // the \id tag syntax:
-                                //    \id <CODE> (Text text text...)
-                                // where <CODE> "is normally the standard 3 letter UBS/SIL scripture book abbreviation."
-                                // we allow books to be identified using the id tag if the first word matches.
-                                // Hence, we add a special exception here:
-                                // book is always added twice: once with the code, and once with
-                                // the full text match.
-                                
-                                if (sTitleTag.equals("\\id") && book.name.indexOf(' ') > 0 ) {
-                                    String bookKey = book.name;
-                                    String bookCode = bookKey.substring(0, bookKey.indexOf(' '));
-                                    books.put(bookCode, book);
-                                }
-                                
-				bookNames.add(book.name);
+				Book book = parseUSFMBook(collectionsFile, folder, file, sTitleTag, cache);
+				addUSFMBook(books, book, file, sTitleTag);
 	                  }
                           catch (Exception e)
                           {
                               System.out.println("Error: " + e.getMessage());
                               e.printStackTrace();
                           }
-                      }
-                  } 
+                    }
                 }
             }
             catch (Exception e)
@@ -745,6 +1277,153 @@ public abstract class GoBibleCreator
 	}
         
         
+	/**
+	 * Parses the USFM books on threadCount threads. Each book's console output
+	 * is captured and the books are added in file order once parsed, so the
+	 * result and the output are the same as parsing the books one at a time.
+	 */
+	private static void parseUSFMParallel(final File collectionsFile, final File folder, Vector<File> sourceFiles, final String sTitleTag, HashMap books, final BookCache cache) throws InterruptedException
+	{
+		// Read the parse configuration before any of the books need it
+		ByteArrayOutputStream configOutput = new ByteArrayOutputStream();
+		ThreadConsole.redirect(configOutput);
+		Book.prepareInterpreter(collectionsFile, STYLE_RED);
+		ThreadConsole.restore();
+		
+		final BuildContext context = context();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		Vector<Future<Book>> results = new Vector<Future<Book>>();
+		Vector<ByteArrayOutputStream> outputs = new Vector<ByteArrayOutputStream>();
+		
+		try
+		{
+			for (final File file : sourceFiles)
+			{
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				
+				results.add(executor.submit(new Callable<Book>()
+				{
+					public Book call() throws IOException
+					{
+						setContext(context);
+						ThreadConsole.redirect(output);
+						try
+						{
+							return parseUSFMBook(collectionsFile, folder, file, sTitleTag, cache);
+						}
+						finally
+						{
+							ThreadConsole.restore();
+							setContext(null);
+						}
+					}
+				}));
+				outputs.add(output);
+			}
+			
+			for (int i = 0; i < sourceFiles.size(); i++)
+			{
+				File file = sourceFiles.get(i);
+				
+				System.out.println("File " + file.getName());
+				if (i == 0)
+				{
+					ThreadConsole.replay(configOutput);
+				}
+				
+				try
+				{
+					Book book = results.get(i).get();
+					ThreadConsole.replay(outputs.get(i));
+					addUSFMBook(books, book, file, sTitleTag);
+				}
+				catch (Exception e)
+				{
+					ThreadConsole.replay(outputs.get(i));
+					Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+					System.out.println("Error: " + cause.getMessage());
+					cause.printStackTrace();
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Parses a USFM book, or loads it from the cache if it has been parsed
+	 * before with the same settings.
+	 * @param cache Cache to use, or null.
+	 */
+	private static Book parseUSFMBook(File collectionsFile, File folder, File file, String sTitleTag, BookCache cache) throws IOException
+	{
+		String key = null;
+		
+		if (cache != null)
+		{
+			key = cache.getKey(file);
+			Vector<Book> cachedBooks = cache.load(key);
+			
+			if (cachedBooks != null && cachedBooks.size() == 1)
+			{
+				System.out.println("Loaded " + file.getName() + " from the cache.");
+				return cachedBooks.get(0);
+			}
+		}
+		
+		String sFilename = folder.toString() + File.separator + file.getName();
+		
+		// Measured per book as well as in total, as books may be parsed on other threads
+		Book book;
+		BuildReport.Phase phase = BuildReport.start("parseUSFMBook");
+		try
+		{
+			book = new Book(collectionsFile, sFilename, STYLE_RED, context().fileCodepage, context().useRedLettering, sTitleTag);
+		}
+		finally
+		{
+			phase.end();
+		}
+		
+		// Books with errors are parsed again next time so that the errors are reported again
+		if (cache != null && !book.parseError)
+		{
+			Vector<Book> parsedBooks = new Vector<Book>();
+			parsedBooks.add(book);
+			cache.store(key, parsedBooks);
+		}
+		
+		return book;
+	}
+	
+	/**
+	 * Adds a parsed USFM book to the lookup table and the list of book names.
+	 */
+	private static void addUSFMBook(HashMap books, Book book, File file, String sTitleTag)
+	{
+		book.fileName = file.getName();
+
+		books.put(book.name, book);
+
+                // the \id tag syntax:
+                //    \id <CODE> (Text text text...)
+                // where <CODE> "is normally the standard 3 letter UBS/SIL scripture book abbreviation."
+                // we allow books to be identified using the id tag if the first word matches.
+                // Hence, we add a special exception here:
+                // book is always added twice: once with the code, and once with
+                // the full text match.
+                
+                if (sTitleTag.equals("\\id") && book.name.indexOf(' ') > 0 ) {
+                    String bookKey = book.name;
+                    String bookCode = bookKey.substring(0, bookKey.indexOf(' '));
+                    books.put(bookCode, book);
+                }
+                
+		context().bookNames.add(book.name);
+	}
+        
 	/**
 	 * No collections file was specified so generating collections file.
 	 */
@@ -766,7 +1445,7 @@ public abstract class GoBibleCreator
 		writer.println("Collection: " + collectionName);
 		
 		// Print out books
-        for (String bookName: bookNames)
+        for (String bookName: context().bookNames)
 		{
 			writer.println("Book: " + bookName);
 		}
@@ -830,7 +1509,7 @@ public abstract class GoBibleCreator
 						// Add book to the lookup table
 						books.put(book.name, book);
 
-						bookNames.add(book.name);
+						context().bookNames.add(book.name);
 					}
 				}
 			}
@@ -856,6 +1535,23 @@ public abstract class GoBibleCreator
         if (bRet)
             sFileExists = "True";
         System.out.println(uiFile.getAbsolutePath() + "  exists:" + sFileExists);
+		
+		context().uiProperties.putAll(readCoreUiProperties(uiFile));
+	}
+	
+	/**
+	 * Reads GoBibleCore's ui.properties the first time it is needed, after
+	 * which every build shares what was read.
+	 **/
+	private static synchronized HashMap<String, String> readCoreUiProperties(File uiFile) throws IOException
+	{
+		if (coreUiProperties != null)
+		{
+			return coreUiProperties;
+		}
+		
+		HashMap<String, String> properties = new HashMap<String, String>();
+		
 		// Open the file for reading one line at a time in UTF-8 character encoding
 		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(uiFile), "UTF-8"));
 		
@@ -867,7 +1563,7 @@ public abstract class GoBibleCreator
 			if (line.startsWith("UI-"))
 			{
 				int index = line.indexOf(':');
-				uiProperties.put(line.substring(0, index), line.substring(index + 1));
+				properties.put(line.substring(0, index), line.substring(index + 1));
 			}
 		        else if(line.startsWith("#") ||line.startsWith("//") || line.startsWith("rem") || line.startsWith("REM"))
 		        {
@@ -882,6 +1578,10 @@ public abstract class GoBibleCreator
 		
 		// Close the file
 		reader.close();
+		
+		coreUiProperties = properties;
+		
+		return coreUiProperties;
 	}
 	
 	/**
@@ -893,7 +1593,7 @@ public abstract class GoBibleCreator
 	public static Vector parseCollectionsFile(File collectionsFile, HashMap books) throws IOException
 	{
 		// Open the file for reading one line at a time in UTF-8 character encoding
-		LineNumberReader reader = new LineNumberReader(new InputStreamReader(new FileInputStream(collectionsFile), "UTF-8"));
+		LineNumberReader reader = openCollectionsFile(collectionsFile);
 		
 		Vector collections = new Vector();
 		Collection collection = null;
@@ -914,17 +1614,17 @@ public abstract class GoBibleCreator
 			// Test if line specifies a WAP site for the JAD files
 			else if (line.startsWith("Wap-site:"))
 			{
-				wapSite = line.substring(9).trim();
+				context().wapSite = line.substring(9).trim();
 			}
 			// read in the Info URL if it is given
 			else if (line.startsWith("MIDlet-Info-URL:"))
 			{
-				midlet_infoURL = line.substring("MIDlet-Info-URL:".length()).trim();
+				context().midlet_infoURL = line.substring("MIDlet-Info-URL:".length()).trim();
 			}
 			// read in the Vendor if it is given
 			else if (line.startsWith("MIDlet-Vendor:"))
 			{
-				midlet_vendor = line.substring("MIDlet-Vendor:".length()).trim();
+				context().midlet_vendor = line.substring("MIDlet-Vendor:".length()).trim();
 			}
 			// Source-Text is ignored here but is retrieved earlier from within extractSourceTextPath()
 			else if (line.startsWith("Source-Text:"))
@@ -950,18 +1650,18 @@ public abstract class GoBibleCreator
                         // Added in version > 2.2.6
 			else if (line.startsWith("Phone-Icon-Filepath:"))
 			{
-                            phoneIconFilepath = line.substring("Phone-Icon-Filepath:".length()).trim();
+                            context().phoneIconFilepath = line.substring("Phone-Icon-Filepath:".length()).trim();
                         }
                         else if (line.startsWith("Codepage:"))
 			{
-                            fileCodepage = line.substring("Codepage:".length()).trim();
+                            context().fileCodepage = line.substring("Codepage:".length()).trim();
                         }
                         // alternate name for the application that will be displayed in the 
                         // phone title
                         // introduced in version > 2.2.6
   			else if (line.startsWith("Application-Name:"))
 			{
-                            applicationName = line.substring("Application-Name:".length()).trim();
+                            context().applicationName = line.substring("Application-Name:".length()).trim();
 			}
                         // Check to see if the user wants to use red lettering
                         // brought in earlier
@@ -970,18 +1670,18 @@ public abstract class GoBibleCreator
                             //defaults to true
                             if (line.toLowerCase().indexOf("false") > 0 || line.toLowerCase().indexOf("no") > 0)
                             {
-                                useRedLettering = false;
+                                context().useRedLettering = false;
                             }
                         }
 			// Test if line specifies Info property
 			else if (line.startsWith("Info:"))
 			{
-				infoString = line.substring(5).trim();
+				context().infoString = line.substring(5).trim();
 			}
 			// Test if line specifies Custom-Font property
 			else if (line.startsWith("Custom-Font:"))
 			{
-				customFontString = line.substring(12).trim();
+				context().customFontString = line.substring(12).trim();
 			}
 			// Test if line specifies Language-Code property
 			else if (line.startsWith("Language-Code:"))
@@ -989,24 +1689,24 @@ public abstract class GoBibleCreator
 				int commaIndex = line.indexOf(',');
 				if (commaIndex == -1)
 				{
-					languageCode = line.substring(14).trim();
-					languageCodePosition = languageCodePositionType.suffix;	// default value
+					context().languageCode = line.substring(14).trim();
+					context().languageCodePosition = languageCodePositionType.suffix;	// default value
 				}
 				else
 				{
-					languageCode = line.substring(14, commaIndex);
+					context().languageCode = line.substring(14, commaIndex);
 					String langPosition = line.substring(commaIndex + 1).trim();
 					if (langPosition.equalsIgnoreCase("prefix"))
 					{
-						languageCodePosition = languageCodePositionType.prefix;
+						context().languageCodePosition = languageCodePositionType.prefix;
 					}
 					else if (langPosition.equalsIgnoreCase("suffix"))
 					{
-						languageCodePosition = languageCodePositionType.suffix;
+						context().languageCodePosition = languageCodePositionType.suffix;
 					}
 					else
 					{
-						languageCodePosition = languageCodePositionType.suffix;	// default value
+						context().languageCodePosition = languageCodePositionType.suffix;	// default value
 						System.out.println("Error parsing collections file. Unsupported Language-Code position: " + langPosition + ", use 'prefix' or 'suffix'. (EX: Language-Code: en, prefix)");
 					}
 				}
@@ -1036,15 +1736,76 @@ public abstract class GoBibleCreator
 				String alignString = line.substring(6).trim().toLowerCase();
 				if (alignString.equals("left"))
 				{
-					align = ALIGN_LEFT;
+					context().align = ALIGN_LEFT;
 				}
 				else if (alignString.equals("right"))
 				{
-					align = ALIGN_RIGHT;
+					context().align = ALIGN_RIGHT;
+				}
+				else
+				{
+					System.out.println("Error passing collections file. Did not understand context().align property: '" + alignString + "'. Must be either 'Left' or 'Right'.");
+				}
+			}
+			// Test if this is the data file size property
+			else if (line.startsWith("Data-File-Size:"))
+			{
+				String sizeString = line.substring(15).trim();
+				int size = parseDataFileSize(sizeString);
+				
+				// The MIDP-1 size is the smallest Go Bible has used, for the phones with the
+				// least memory, so smaller files would only add JAR entries and index size
+				if (size < MAX_FILE_SIZE_MIDP_1)
+				{
+					System.out.println("Error parsing collections file. Did not understand Data-File-Size property: '" + sizeString + "'. Must be a size of at least " + (MAX_FILE_SIZE_MIDP_1 >> 10) + "K, eg '16K', or one of " + Arrays.toString(DATA_FILE_SIZE_PROFILES) + ".");
+				}
+				else
+				{
+					context().maxFileSize = size;
+				}
+			}
+			// Test if this is the text dictionary property
+			else if (line.startsWith("Text-Dictionary:"))
+			{
+				String dictionaryString = line.substring(16).trim();
+				
+				// Only estimating is possible until GoBibleCore can decode dictionary references
+				if (dictionaryString.equalsIgnoreCase("estimate"))
+				{
+					context().estimateTextDictionary = true;
+				}
+				else if (dictionaryString.equalsIgnoreCase("none"))
+				{
+					context().estimateTextDictionary = false;
 				}
 				else
 				{
-					System.out.println("Error passing collections file. Did not understand align property: '" + alignString + "'. Must be either 'Left' or 'Right'.");
+					System.out.println("Error parsing collections file. Did not understand Text-Dictionary property: '" + dictionaryString + "'. Must be either 'Estimate' or 'None'.");
+				}
+			}
+			// Test if this is a compression property
+			else if (line.startsWith("Compression:"))
+			{
+				try
+				{
+					context().compression.addRule(line.substring(12).trim());
+				}
+				catch (IllegalArgumentException e)
+				{
+					System.out.println("Error parsing collections file. Did not understand Compression property: '" + line.substring(12).trim() + "'. " + e.getMessage() + ".");
+				}
+			}
+			// Test if this is the file packing property
+			else if (line.startsWith("File-Packing:"))
+			{
+				String packingString = line.substring(13).trim().toLowerCase();
+				try
+				{
+					context().filePacking = FilePacker.Method.valueOf(packingString);
+				}
+				catch (IllegalArgumentException e)
+				{
+					System.out.println("Error parsing collections file. Did not understand File-Packing property: '" + packingString + "'. Must be either 'Greedy' or 'Optimal'.");
 				}
 			}
 			// Test if this is a book name map
@@ -1100,13 +1861,13 @@ public abstract class GoBibleCreator
 				}
 				
 				// Create a new collection with the name after "Collection:"
-				if (languageCodePosition == languageCodePositionType.suffix)
+				if (context().languageCodePosition == languageCodePositionType.suffix)
 				{
-					collection = new Collection(fileName + " " + languageCode, collectionName + " " + languageCode);
+					collection = new Collection(fileName + " " + context().languageCode, collectionName + " " + context().languageCode);
 				}
 				else
 				{
-					collection = new Collection(languageCode + " " + fileName, languageCode + " " + collectionName);
+					collection = new Collection(context().languageCode + " " + fileName, context().languageCode + " " + collectionName);
 				}
 				collections.add(collection);
 			}
@@ -1174,16 +1935,16 @@ public abstract class GoBibleCreator
 			{
 				// Override English definition
 				int index = line.indexOf(':');
-				uiProperties.put(line.substring(0, index), line.substring(index + 1));
+				context().uiProperties.put(line.substring(0, index), line.substring(index + 1));
 			}
 			// Empth verse text
 			else if (line.startsWith("Empty-Verse-Text:"))
 			{
 				// Grab text to display where the verse text is missing
-				EmptyVerseString = line.substring(15).trim();
+				context().EmptyVerseString = line.substring(15).trim();
 			}
 			else if (line.startsWith("USFM-ParseConfig:")) {
-			    GoBibleCreator.usfmParseConfigFile = line.substring("USFM-ParseConfig:".length()).trim();
+			    GoBibleCreator.context().usfmParseConfigFile = line.substring("USFM-ParseConfig:".length()).trim();
 			}
 			// If line isn't empty then report that we don't know what it is
 			else if (!line.trim().equals(""))
@@ -1214,13 +1975,20 @@ public abstract class GoBibleCreator
 	
 		wapPage.append("<html>\n<head>\n<title>Go Bible</title>\n</head>\n<body>\n\n");*/
 	
-		for (Enumeration e = collections.elements(); e.hasMoreElements(); )
+		if (threadCount > 1 && collections.size() > 1)
 		{
-			Collection collection = (Collection) e.nextElement();
-			
-			System.out.println("Writing Collection " + collection.fileName + ": ");
-			
-			writeCollection(directory, collection, books, goBibleJar/*, wapPage*/);
+			writeCollectionsParallel(directory, collections, books, goBibleJar);
+		}
+		else
+		{
+			for (Enumeration e = collections.elements(); e.hasMoreElements(); )
+			{
+				Collection collection = (Collection) e.nextElement();
+				
+				System.out.println("Writing Collection " + collection.fileName + ": ");
+				
+				writeCollection(directory, collection, books, goBibleJar/*, wapPage*/);
+			}
 		}
 		
 		/*if (wapSite != null)
@@ -1237,6 +2005,79 @@ public abstract class GoBibleCreator
 		}*/
 	}
 	
+	/**
+	 * Writes out the collections on threadCount threads. Each collection's
+	 * console output is captured and printed in the order of the collections
+	 * file, so both the output and the files written are the same as writing
+	 * the collections one at a time.
+	 **/
+	private static void writeCollectionsParallel(final File directory, Vector collections, final HashMap books, final JarFile goBibleJar) throws IOException
+	{
+		final BuildContext context = context();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		Vector<Future<Object>> results = new Vector<Future<Object>>();
+		Vector<ByteArrayOutputStream> outputs = new Vector<ByteArrayOutputStream>();
+		
+		try
+		{
+			for (Enumeration e = collections.elements(); e.hasMoreElements(); )
+			{
+				final Collection collection = (Collection) e.nextElement();
+				final ByteArrayOutputStream output = new ByteArrayOutputStream();
+				
+				results.add(executor.submit(new Callable<Object>()
+				{
+					public Object call() throws IOException
+					{
+						setContext(context);
+						ThreadConsole.redirect(output);
+						try
+						{
+							System.out.println("Writing Collection " + collection.fileName + ": ");
+							
+							writeCollection(directory, collection, books, goBibleJar);
+						}
+						finally
+						{
+							ThreadConsole.restore();
+							setContext(null);
+						}
+						return null;
+					}
+				}));
+				outputs.add(output);
+			}
+			
+			for (int i = 0; i < results.size(); i++)
+			{
+				try
+				{
+					results.get(i).get();
+				}
+				catch (InterruptedException e)
+				{
+					throw new InterruptedIOException(e.getMessage());
+				}
+				catch (ExecutionException e)
+				{
+					ThreadConsole.replay(outputs.get(i));
+					
+					if (e.getCause() instanceof IOException)
+					{
+						throw (IOException) e.getCause();
+					}
+					throw new RuntimeException(e.getCause());
+				}
+				
+				ThreadConsole.replay(outputs.get(i));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
 	/**
 	 * Creates a new directory within the specified directory and writes out the specified
 	 * collection therein. Also creates a wap subdirectory where WAP JAD files are placed. Adds a new line
@@ -1256,10 +2097,10 @@ public abstract class GoBibleCreator
 		Attributes attributes = manifest.getMainAttributes();
 		
 //		attributes.putValue("Manifest-Version", "1.0");
-                if (applicationName != null)
+                if (context().applicationName != null)
                 {
-        		attributes.putValue("MIDlet-Name", (collection.name + " " + applicationName).trim());
-                        attributes.putValue("MIDlet-1", (collection.name + " " + applicationName).trim() + ", Icon.png, GoBible");
+        		attributes.putValue("MIDlet-Name", (collection.name + " " + context().applicationName).trim());
+                        attributes.putValue("MIDlet-1", (collection.name + " " + context().applicationName).trim() + ", Icon.png, GoBible");
                 }
                 else
                 {
@@ -1269,9 +2110,9 @@ public abstract class GoBibleCreator
                 //attributes.putValue("MIDlet-Name", collection.name + NAME_APPENDAGE);
                 //attributes.putValue("MIDlet-1", collection.name + NAME_APPENDAGE + ", Icon.png, GoBible");
 		attributes.putValue("MIDlet-Icon", "Icon.png");
-		if (midlet_vendor == null)
-			midlet_vendor = "Jolon Faichney";
-		attributes.putValue("MIDlet-Vendor", midlet_vendor);
+		if (context().midlet_vendor == null)
+			context().midlet_vendor = "Jolon Faichney";
+		attributes.putValue("MIDlet-Vendor", context().midlet_vendor);
 		// attributes.putValue("MIDlet-Vendor", "Jolon Faichney");
 		attributes.putValue("MIDlet-Version", versionString);/*
 		attributes.putValue("TestString",
@@ -1292,17 +2133,23 @@ public abstract class GoBibleCreator
 		attributes.putValue("MicroEdition-Profile", midpVersion);
 
 		// Write out info property
-		if (infoString != null)
+		if (context().infoString != null)
 		{
-			attributes.putValue("Go-Bible-Info", infoString);
+			attributes.putValue("Go-Bible-Info", context().infoString);
 		}
 		
 		// Write out the alignment property
-		attributes.putValue("Go-Bible-Align", ALIGN_TEXT[align]);
+		attributes.putValue("Go-Bible-Align", ALIGN_TEXT[context().align]);
+
+		// Record the size the data files are combined up to
+		if (COMBINED_CHAPTERS)
+		{
+			attributes.putValue(DATA_FILE_SIZE_ATTRIBUTE, Integer.toString(context().maxFileSize));
+		}
 
 		// Create a String to contain the UI properties
 		String uiPropertiesString = "";
-		Set uiMappings = uiProperties.entrySet();
+		Set uiMappings = context().uiProperties.entrySet();
 		
 		for (Iterator i = uiMappings.iterator(); i.hasNext(); )
 		{
@@ -1325,10 +2172,23 @@ public abstract class GoBibleCreator
 			writeCollectionJar(directory, jarFile, collection, books, goBibleJar, manifest, uiPropertiesString);
 		}
 				
+		if (jarFile.exists())
+		{
+			System.out.println(JarCompression.describe(jarFile));
+		}
+		
 		// Create the JAD file that will go in the zip
-		createJadFile(directory, collection, jarFile.length(), collection.fileName + ".jar");
+		BuildReport.Phase phase = BuildReport.start("createJadFile");
+		try
+		{
+			createJadFile(directory, collection, jarFile.length(), collection.fileName + ".jar");
+		}
+		finally
+		{
+			phase.end();
+		}
 		
-		if (wapSite != null)
+		if (context().wapSite != null)
 		{
 			File wapDirectory = new File(directory, "wap");
 			
@@ -1338,7 +2198,7 @@ public abstract class GoBibleCreator
 			}	
 
 			// Create the JAD file for the WAP site
-			createJadFile(wapDirectory, collection, jarFile.length(), wapSite + "/" + directory.getName() + "/" + collection.fileName + ".jar");
+			createJadFile(wapDirectory, collection, jarFile.length(), context().wapSite + "/" + directory.getName() + "/" + collection.fileName + ".jar");
 			
 			// Add a line to the wapPage
 			/*wapPage.append("<object declare=\"declare\" id=\"" + collection.fileName + "\" data=\"" + wapSite + collection.fileName + ".jad\" type=\"text/vnd.sun.j2me.app-descriptor\"></object>\n");
@@ -1366,16 +2226,38 @@ public abstract class GoBibleCreator
 			
 			JarFile tmpJar = new JarFile(tmpFile);
 
-			JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)), manifest);
+			// The Bible Data is copied rather than written so it keeps the
+			// data file size it was originally written with
+			Manifest tmpManifest = tmpJar.getManifest();
+			String dataFileSize = tmpManifest == null ? null : tmpManifest.getMainAttributes().getValue(DATA_FILE_SIZE_ATTRIBUTE);
+			
+			if (dataFileSize != null)
+			{
+				manifest.getMainAttributes().putValue(DATA_FILE_SIZE_ATTRIBUTE, dataFileSize);
+			}
+			else
+			{
+				manifest.getMainAttributes().remove(new Attributes.Name(DATA_FILE_SIZE_ATTRIBUTE));
+			}
+
+			JarOutputStream jarOutputStream = new RawJarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)), manifest);
 			
 			// Copy in the Bible Data from the original JAR
-			copyInContentsOfJar(tmpJar, jarOutputStream, "Bible Data");
+			BuildReport.Phase phase = BuildReport.start("copyInContentsOfJar");
+			try
+			{
+				copyInContentsOfJar(tmpJar, jarOutputStream, "Bible Data");
 			
-			// Copy in GoBibleCore
-			copyInContentsOfJar(goBibleJar, jarOutputStream, null);
+				// Copy in GoBibleCore
+				copyInContentsOfJar(goBibleJar, jarOutputStream, null);
+			}
+			finally
+			{
+				phase.end();
+			}
 
 			// Create a JAR entry for the UI properties
-			jarOutputStream.putNextEntry(new JarEntry(UI_PROPERTIES_FILE_NAME));
+			putNextEntry(jarOutputStream, UI_PROPERTIES_FILE_NAME);
 			jarOutputStream.write(uiPropertiesString.getBytes("UTF-8"));
 			
 			jarOutputStream.close();
@@ -1395,21 +2277,78 @@ public abstract class GoBibleCreator
 	 */
 	public static void writeCollectionJar(File directory, File jarFile, Collection collection, HashMap books, JarFile goBibleJar, Manifest manifest, String uiPropertiesString) throws IOException
 	{
-		JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)), manifest);
+		JarOutputStream jarOutputStream = new RawJarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)), manifest);
 
-		// Copy from Go Bible Jar
-		copyInContentsOfJar(goBibleJar, jarOutputStream, null);
+		// Copy from Go Bible Jar. Every collection needs its own copy as a
+		// MIDlet can only load classes and resources from its own JAR, and
+		// GoBibleCore reads the Bible Data from fixed paths within it. The
+		// entries are copied still compressed so this takes little time.
+		BuildReport.Phase phase = BuildReport.start("copyInContentsOfJar");
+		try
+		{
+			copyInContentsOfJar(goBibleJar, jarOutputStream, null);
+		}
+		finally
+		{
+			phase.end();
+		}
 
 		// Create a JAR entry for the UI properties
-		jarOutputStream.putNextEntry(new JarEntry(UI_PROPERTIES_FILE_NAME));
+		putNextEntry(jarOutputStream, UI_PROPERTIES_FILE_NAME);
 		jarOutputStream.write(uiPropertiesString.getBytes("UTF-8"));
 	
-		writeMultipleIndex(jarOutputStream, collection, books);
-		writeMultipleBooks(jarOutputStream, collection, books);
+		phase = BuildReport.start("writeMultipleIndex");
+		try
+		{
+			writeMultipleIndex(jarOutputStream, collection, books);
+		}
+		finally
+		{
+			phase.end();
+		}
+		
+		FilePacker.Sizes sizes;
+		phase = BuildReport.start("writeMultipleBooks");
+		try
+		{
+			sizes = writeMultipleBooks(jarOutputStream, collection, books);
+		}
+		finally
+		{
+			phase.end();
+		}
 
 		jarOutputStream.close();
 
 		System.out.println(collection.books.size() + " book(s) written.");
+		
+		if (COMBINED_CHAPTERS)
+		{
+			System.out.println(sizes);
+			
+			if (context().estimateTextDictionary)
+			{
+				phase = BuildReport.start("estimateTextDictionary");
+				try
+				{
+					System.out.println(TextDictionary.estimate(collection, books));
+				}
+				finally
+				{
+					phase.end();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Starts a new entry in a collection JAR, compressed as the Compression
+	 * properties in the Collections file say.
+	 **/
+	private static void putNextEntry(JarOutputStream jarOutputStream, String name) throws IOException
+	{
+		context().compression.apply(jarOutputStream, name);
+		jarOutputStream.putNextEntry(new JarEntry(name));
 	}
 	
 	/**
@@ -1434,25 +2373,48 @@ public abstract class GoBibleCreator
 			if (!entryName.startsWith("META-INF") && !entryName.equals(UI_PROPERTIES_FILE_NAME) && (name == null || entryName.startsWith(name)))
 			{
                             boolean bNewIcon = false;
-                            if (entryName.equals("Icon.png") && phoneIconFilepath != null)
+                            if (entryName.equals("Icon.png") && context().phoneIconFilepath != null)
                             {
                                 //check for file existance first
-                                File oFile = new File(baseSourceDirectory, phoneIconFilepath);
+                                File oFile = new File(context().baseSourceDirectory, context().phoneIconFilepath);
                                 if (oFile.exists())
                                 {
                                     bNewIcon = true;
                                     sFilepath = oFile.getPath();
                                 }
 								else
-									System.out.println("Error: Icon file doesn't exist <"+phoneIconFilepath+">.");
+									System.out.println("Error: Icon file doesn't exist <"+context().phoneIconFilepath+">.");
 
                             }
                             
                             InputStream inputStream;
-                            if (!bNewIcon)
+                            RawJarEntry rawEntry = null;
+                            if (!bNewIcon && jarOutputStream instanceof RawJarOutputStream)
                             {
-                                 // Add entry to new JAR file
-                                jarOutputStream.putNextEntry(jarEntry);
+                                HashMap<String, RawJarEntry> rawEntries = getRawJarEntries(jar);
+                                if (rawEntries != null)
+                                    rawEntry = rawEntries.get(entryName);
+                            }
+
+                            if (rawEntry != null && !context().compression.matches(entryName))
+                            {
+                                // Copy the compressed entry as it is rather than inflating and deflating it again
+                                ((RawJarOutputStream) jarOutputStream).putRawEntry(rawEntry);
+                            }
+                            else if (!bNewIcon)
+                            {
+                                 // Add entry to new JAR file, compressed as before unless a Compression property applies
+                                context().compression.apply(jarOutputStream, entryName);
+                                if (context().compression.matches(entryName))
+                                {
+                                    JarEntry newEntry = new JarEntry(entryName);
+                                    newEntry.setTime(jarEntry.getTime());
+                                    jarOutputStream.putNextEntry(newEntry);
+                                }
+                                else
+                                {
+                                    jarOutputStream.putNextEntry(jarEntry);
+                                }
                                //copy over the resource from the jar
                                 inputStream = new BufferedInputStream(jar.getInputStream(jarEntry));
                                 // Read all of the bytes from the Go Bible JAR file and write them to the new JAR file
@@ -1473,8 +2435,7 @@ public abstract class GoBibleCreator
                                 byte[] buffer = new byte[100000]; 
                                 FileInputStream fi = new FileInputStream(sFilepath); 
                                 inputStream = new BufferedInputStream(fi, 100000) ; 
-                                ZipEntry entry = new ZipEntry("Icon.png"); 
-                                jarOutputStream.putNextEntry ( entry ) ; 
+                                putNextEntry(jarOutputStream, "Icon.png");
 
                                 int count; 
                                 while ((count=inputStream.read(buffer, 0, 100000)) != -1 )
@@ -1487,6 +2448,38 @@ public abstract class GoBibleCreator
 		}		
 	}
 	
+	/**
+	 * Returns the compressed entries of a JAR file so that they can be copied
+	 * with RawJarOutputStream.putRawEntry(). The entries are read once per
+	 * JarFile and kept while the JarFile is in use.
+	 * @return Entries indexed by name, or null if the JAR can't be read this way.
+	 **/
+	public static HashMap<String, RawJarEntry> getRawJarEntries(JarFile jar)
+	{
+		synchronized (rawJarEntries)
+		{
+			if (rawJarEntries.containsKey(jar))
+			{
+				return rawJarEntries.get(jar);
+			}
+
+			HashMap<String, RawJarEntry> entries = null;
+
+			try
+			{
+				entries = RawJarEntry.read(new File(jar.getName()));
+			}
+			catch (IOException e)
+			{
+				System.out.println("Warning: Recompressing the contents of " + jar.getName() + ": " + e.getMessage());
+			}
+
+			rawJarEntries.put(jar, entries);
+
+			return entries;
+		}
+	}
+
 	/**
 	 * Creates a JAD file in the specified location, for the specified collection, with the specified JAR file length,
 	 * with the specified URL.
@@ -1503,10 +2496,10 @@ public abstract class GoBibleCreator
 		
 		PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(jadFile), "UTF-8")));
 		
-                if (applicationName != null)
+                if (context().applicationName != null)
                 {
-        		writer.println("MIDlet-1: " + (collection.name + " " + applicationName).trim() + ", Icon.png, GoBible");
-                	writer.println("MIDlet-Name: " + (collection.name + " " + applicationName).trim());
+        		writer.println("MIDlet-1: " + (collection.name + " " + context().applicationName).trim() + ", Icon.png, GoBible");
+                	writer.println("MIDlet-Name: " + (collection.name + " " + context().applicationName).trim());
                 }
                 else
                 {
@@ -1520,24 +2513,24 @@ public abstract class GoBibleCreator
 		writer.println("MIDlet-Jar-URL: " + url);
 		// writer.println("MIDlet-Info-URL: http://wap.jolon.org");
 		// writer.println("MIDlet-Vendor: Jolon Faichney");
-		if (midlet_infoURL == null)
-			midlet_infoURL = "http://wap.jolon.org";
-		writer.println("MIDlet-Info-URL: " + midlet_infoURL);
-		if (midlet_vendor == null)
-			midlet_vendor = "Jolon Faichney";
-		writer.println("MIDlet-Vendor: " + midlet_vendor);
+		if (context().midlet_infoURL == null)
+			context().midlet_infoURL = "http://wap.jolon.org";
+		writer.println("MIDlet-Info-URL: " + context().midlet_infoURL);
+		if (context().midlet_vendor == null)
+			context().midlet_vendor = "Jolon Faichney";
+		writer.println("MIDlet-Vendor: " + context().midlet_vendor);
 		writer.println("MIDlet-Version: " + versionString);
 		writer.println("MIDlet-Data-Size: 100");
 		writer.println("MicroEdition-Profile: " + midpVersion);
 
 		// Write out info property
-		if (infoString != null)
+		if (context().infoString != null)
 		{
-			writer.println("Go-Bible-Info: " + infoString + " Ver. " + versionString);
+			writer.println("Go-Bible-Info: " + context().infoString + " Ver. " + versionString);
 		}
 		
 		// Write out the alignment property
-		writer.println("Go-Bible-Align: " + ALIGN_TEXT[align]);
+		writer.println("Go-Bible-Align: " + ALIGN_TEXT[context().align]);
 
 		writer.close();
 	}
@@ -1575,33 +2568,20 @@ public abstract class GoBibleCreator
 			output.writeShort(collectionBook.startChapter);
 			output.writeShort(collectionBook.endChapter - collectionBook.startChapter + 1);
 			
-			int fileNumber = 0;
-			int fileLength = 0;
+			int[] fileNumbers = getFileNumbers(collectionBook, thmlBook);
 			
 			for (int i = collectionBook.startChapter; i <= collectionBook.endChapter; i++ )
 			{
-				Chapter chapter = (Chapter) thmlBook.chapters.elementAt(i - thmlBook.startChapter);
+				Chapter chapter = thmlBook.getChapter(i - thmlBook.startChapter);
 
 				if (COMBINED_CHAPTERS)
 				{
-					// If this isn't the first chapter for the file and the length of the
-					// next chapter will be greater than the maximum allowed file length
-					// then put this chapter into the next file
-					if ((fileLength != 0) && ((fileLength + chapter.allVerses.length() - MAX_FILE_SIZE) > (MAX_FILE_SIZE - fileLength)))
-					{
-						fileNumber++;
-						fileLength = 0;
-					}
-									
-					fileLength += chapter.allVerses.length();
-					chapter.fileNumber = fileNumber;
-
-					output.write(fileNumber);
-					output.writeInt(chapter.allVerses.length());
+					output.write(fileNumbers[i - collectionBook.startChapter]);
+					output.writeInt(chapter.getLength());
 				}
 				
-//				System.err.printf("chapter %d num verses: %d length %d\n", i, chapter.verses.size(), chapter.allVerses.length());
-				output.write(chapter.verses.size());
+//				System.err.printf("chapter %d num verses: %d length %d\n", i, chapter.getVerseCount(), chapter.getLength());
+				output.write(chapter.getVerseCount());
 			}
 		}
 		
@@ -1610,18 +2590,85 @@ public abstract class GoBibleCreator
 		// Get the bytes of the index so that they can be written to the JAR file
 		byte[] byteArray = byteArrayOutputStream.toByteArray();
 		
-		jarOutputStream.putNextEntry(new JarEntry("Bible Data/Index"));
+		putNextEntry(jarOutputStream, "Bible Data/Index");
 		jarOutputStream.write(byteArray, 0, byteArray.length);
 	}
 	
+	/**
+	 * Reads the value of the Data-File-Size property, either the name of one
+	 * of the DATA_FILE_SIZE_PROFILES or a number of bytes optionally followed
+	 * by K or KB for kilobytes.
+	 * @return The size in bytes, or -1 if it can't be understood.
+	 **/
+	public static int parseDataFileSize(String sizeString)
+	{
+		for (int i = 0; i < DATA_FILE_SIZE_PROFILES.length; i++)
+		{
+			if (DATA_FILE_SIZE_PROFILES[i].equalsIgnoreCase(sizeString))
+			{
+				return DATA_FILE_SIZE_PROFILE_SIZES[i];
+			}
+		}
+		
+		String number = sizeString.toUpperCase();
+		int multiplier = 1;
+		
+		if (number.endsWith("KB"))
+		{
+			number = number.substring(0, number.length() - 2).trim();
+			multiplier = 1 << 10;
+		}
+		else if (number.endsWith("K"))
+		{
+			number = number.substring(0, number.length() - 1).trim();
+			multiplier = 1 << 10;
+		}
+		
+		try
+		{
+			long size = Long.parseLong(number) * multiplier;
+			
+			return size > Integer.MAX_VALUE ? -1 : (int) size;
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+	
+	/**
+	 * Works out which combined file each chapter of the book goes into. The
+	 * file numbers are worked out per collection rather than stored in the
+	 * Chapter, as the same chapter may be written out by several collections
+	 * at once. Lengths are in UTF-8 bytes as that is how the file is written.
+	 * @param collectionBook Contains the book start and end chapters to write out.
+	 * @param xmlBook Contains the chapters.
+	 * @return The file number of each chapter from the start chapter.
+	 **/
+	public static int[] getFileNumbers(Book collectionBook, Book xmlBook)
+	{
+		int[] lengths = new int[collectionBook.endChapter - collectionBook.startChapter + 1];
+		
+		for (int i = collectionBook.startChapter; i <= collectionBook.endChapter; i++ )
+		{
+			lengths[i - collectionBook.startChapter] = xmlBook.getChapter(i - xmlBook.startChapter).getByteLength();
+		}
+		
+		return FilePacker.pack(lengths, context().maxFileSize, context().filePacking);
+	}
+	
 	/**
 	 * Writes out the actual book data.
 	 * @param directory Directory to place the Go Bible data.
 	 * @param collection Collection to create.
 	 * @param books Books from the XML file.
+	 * @return The sizes of the combined files written.
 	 **/
-	public static void writeMultipleBooks(JarOutputStream jarOutputStream, Collection collection, HashMap books) throws IOException
+	public static FilePacker.Sizes writeMultipleBooks(JarOutputStream jarOutputStream, Collection collection, HashMap books) throws IOException
 	{
+		FilePacker.Sizes sizes = new FilePacker.Sizes(context().maxFileSize);
+		
+
 		// Write the number of chapters and verses for each book
 		for (Enumeration e = collection.books.elements(); e.hasMoreElements(); )
 		{
@@ -1635,48 +2682,35 @@ public abstract class GoBibleCreator
 			// Write out the book index
 			writeMultipleBookIndex(jarOutputStream, collectionBook, thmlBook);
 
-			DataOutputStream dataOutputStream = new DataOutputStream(jarOutputStream);
-
 			int fileNumber = 0;
+			int[] fileNumbers = getFileNumbers(collectionBook, thmlBook);
 
-			StringBuffer buffer = new StringBuffer();
+			// First chapter of the combined file being collected
+			int fileStart = collectionBook.startChapter;
 
 			for (int chapterNumber = collectionBook.startChapter; chapterNumber <= collectionBook.endChapter; chapterNumber++)
 			{
-				Chapter chapter = (Chapter) thmlBook.chapters.elementAt(chapterNumber - thmlBook.startChapter);
+				Chapter chapter = thmlBook.getChapter(chapterNumber - thmlBook.startChapter);
 				
 				// Write out the chapter
 				
 				if (COMBINED_CHAPTERS)
 				{
 					// If the file number has changed then write out the file
-					if (chapter.fileNumber != fileNumber)
+					if (fileNumbers[chapterNumber - collectionBook.startChapter] != fileNumber)
 					{
-						//byte[] byteArray = buffer.toString().getBytes("UTF-8");
-
-						//System.out.println("Writing " + thmlBook.name + " " + fileNumber + " - " + byteArray.length + " bytes");
-						
-						jarOutputStream.putNextEntry(new JarEntry("Bible Data/" + thmlBook.fileName + "/" + thmlBook.fileName + " " + fileNumber));
-						//jarOutputStream.write(byteArray, 0, byteArray.length);
-						//dataOutputStream.writeUTF(buffer.toString());
-						
-						// Convert the StringBuffer to bytes
-						byte[] verseBytes = buffer.toString().getBytes("UTF-8");
-						dataOutputStream.writeInt(verseBytes.length);
-						dataOutputStream.write(verseBytes, 0, verseBytes.length);
+						sizes.add(writeCombinedFile(jarOutputStream, thmlBook, fileNumber, fileStart, chapterNumber - 1));
 
-						fileNumber = chapter.fileNumber;
-						buffer = new StringBuffer();
+						fileNumber = fileNumbers[chapterNumber - collectionBook.startChapter];
+						fileStart = chapterNumber;
 					}
-
-					buffer.append(chapter.allVerses.toString());
 				}
 				else
 				{
 					ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 					DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
 					
-					String allVerses = chapter.allVerses.toString();
+					String allVerses = chapter.getText();
 					
 					//System.out.println("Writing " + thmlBook.name + " " + chapterNumber + " - " + allVerses.length() + " bytes");
 					
@@ -1686,7 +2720,7 @@ public abstract class GoBibleCreator
 					
 					byte[] byteArray = byteArrayOutputStream.toByteArray();
 					
-					jarOutputStream.putNextEntry(new JarEntry("Bible Data/" + thmlBook.fileName + "/" + thmlBook.fileName + " " + chapterNumber));
+					putNextEntry(jarOutputStream, "Bible Data/" + thmlBook.fileName + "/" + thmlBook.fileName + " " + chapterNumber);
 					jarOutputStream.write(byteArray, 0, byteArray.length);
 				}
 			}
@@ -1694,20 +2728,41 @@ public abstract class GoBibleCreator
 			if (COMBINED_CHAPTERS)
 			{
 				// Write out the final file
-				//byte[] byteArray = buffer.toString().getBytes("UTF-8");
-
-				//System.out.println("Writing " + thmlBook.name + " " + fileNumber + " - " + byteArray.length + " bytes");
-				
-				jarOutputStream.putNextEntry(new JarEntry("Bible Data/" + thmlBook.fileName + "/" + thmlBook.fileName + " " + fileNumber));
-				//jarOutputStream.write(byteArray, 0, byteArray.length);
-				//dataOutputStream.writeUTF(buffer.toString());
-
-				// Convert the StringBuffer to bytes
-				byte[] verseBytes = buffer.toString().getBytes("UTF-8");
-				dataOutputStream.writeInt(verseBytes.length);
-				dataOutputStream.write(verseBytes, 0, verseBytes.length);
+				sizes.add(writeCombinedFile(jarOutputStream, thmlBook, fileNumber, fileStart, collectionBook.endChapter));
 			}
-		}	
+		}
+		
+		return sizes;
+	}
+	
+	/**
+	 * Writes out a file of combined chapters, the length of their text in
+	 * UTF-8 followed by the text, which the chapters already hold in UTF-8.
+	 * @param xmlBook Contains the chapters.
+	 * @param firstChapter Chapter number of the first chapter in the file.
+	 * @param lastChapter Chapter number of the last chapter in the file.
+	 * @return The length of the text in the file in bytes.
+	 **/
+	private static int writeCombinedFile(JarOutputStream jarOutputStream, Book xmlBook, int fileNumber, int firstChapter, int lastChapter) throws IOException
+	{
+		putNextEntry(jarOutputStream, "Bible Data/" + xmlBook.fileName + "/" + xmlBook.fileName + " " + fileNumber);
+		
+		DataOutputStream output = new DataOutputStream(jarOutputStream);
+		int length = 0;
+		
+		for (int chapterNumber = firstChapter; chapterNumber <= lastChapter; chapterNumber++)
+		{
+			length += xmlBook.getChapter(chapterNumber - xmlBook.startChapter).getByteLength();
+		}
+		
+		output.writeInt(length);
+		
+		for (int chapterNumber = firstChapter; chapterNumber <= lastChapter; chapterNumber++)
+		{
+			xmlBook.getChapter(chapterNumber - xmlBook.startChapter).writeText(output);
+		}
+		
+		return length;
 	}
 	
 	/**
@@ -1726,12 +2781,11 @@ public abstract class GoBibleCreator
 		// Write the verse sizes for every chapter
 		for (int chapterNumber = collectionBook.startChapter; chapterNumber <= collectionBook.endChapter; chapterNumber++)
 		{
-			Chapter chapter = (Chapter) xmlBook.chapters.elementAt(chapterNumber - xmlBook.startChapter);
+			Chapter chapter = xmlBook.getChapter(chapterNumber - xmlBook.startChapter);
 			
-			for (Enumeration e = chapter.verses.elements(); e.hasMoreElements(); )
+			for (int i = 0; i < chapter.getVerseCount(); i++)
 			{
-				String verse = (String) e.nextElement();
-				output.writeShort(verse.length());
+				output.writeShort(chapter.getVerseLength(i));
 			}
 		}		
 		
@@ -1739,7 +2793,7 @@ public abstract class GoBibleCreator
 		
 		byte[] byteArray = byteArrayOutputStream.toByteArray();
 		
-		jarOutputStream.putNextEntry(new JarEntry("Bible Data/" + xmlBook.fileName + "/Index"));
+		putNextEntry(jarOutputStream, "Bible Data/" + xmlBook.fileName + "/Index");
 		
 		jarOutputStream.write(byteArray, 0, byteArray.length);
 	}
@@ -1777,11 +2831,11 @@ public abstract class GoBibleCreator
 		{
 			Book book = (Book) bookObject;
 			
-			for (Object chapterObject: book.chapters)
+			for (int chapterIndex = 0; chapterIndex < book.chapters.size(); chapterIndex++)
 			{
-				Chapter chapter = (Chapter) chapterObject;
+				Chapter chapter = book.getChapter(chapterIndex);
 				
-				char[] charArray = chapter.allVerses.toString().toCharArray();
+				char[] charArray = chapter.getText().toCharArray();
 				
 				int startIndex = 0;
 				int c = 0;
@@ -1950,8 +3004,18 @@ public abstract class GoBibleCreator
 
 	public static String extractCDATA(XMLObject xml)
 	{
-		String result = "";
+		VerseBuilder result = new VerseBuilder(false);
+		
+		extractCDATA(xml, result);
 		
+		return result.toString();
+	}
+
+	/**
+	 * Appends the CDATA within the XML to a verse.
+	 */
+	public static void extractCDATA(XMLObject xml, VerseBuilder result)
+	{
 		for (Enumeration e = xml.getChildren(); e.hasMoreElements(); )
 		{
 			XMLObject child = (XMLObject) e.nextElement();
@@ -1959,17 +3023,15 @@ public abstract class GoBibleCreator
 			if (child instanceof CDATA)
 			{
 				// Add the CDATA to the result
-				result += child.getTag();
+				result.append(child.getTag());
 			}
 			// Don't include CDATA within the sup, reference, or title tags
 			else if (!child.getTag().equals("sup") && !child.getTag().equals("reference") && !child.getTag().equals("title"))
 			{
 				// The child itself may contain CDATA so check it
-				result += extractCDATA(child);
+				extractCDATA(child, result);
 			}
 		} 
-		
-		return result;
 	}
 }
 
@@ -2037,17 +3099,31 @@ class Book
 	/** Short book name used for file names as it is guaranteed to be 7-bit ASCII. **/
 	public String fileName;
 	
-	/** Chapters parsed from ThML file of type Chapter. **/
+	/**
+	 * Chapters parsed from ThML file of type Chapter. Chapters of OSIS and
+	 * ThML books are only converted when they are first asked for, until
+	 * then they are null here, so use getChapter() rather than reading
+	 * them from here directly.
+	 **/
 	public Vector chapters = new Vector();
 	
+	/** Chapter tags of the chapters not yet converted, by index into chapters, or null if there are none. **/
+	private XMLObject[] chapterSources;
+	
+	/** Converter for the chapters not yet converted. **/
+	private GoBibleCreator creator;
+	
 	/** Start chapter if not 1, else -1. **/
 	public int startChapter = -1;
 	
 	/** End chapter if not 1, else -1. **/
 	public int endChapter = -1;
+	
+	/** Set if parsing a USFM book ran into an error so the book may be incomplete. **/
+	public boolean parseError = false;
         
-        /* USFM Interpreter */
-        private static USFMParse interpreter = null;
+        /* USFM Interpreters holding each parse configuration read so far, shared by every build */
+        private static HashMap<String, USFMParse> interpreters = new HashMap<String, USFMParse>();
 	
 	/**
 	 * Constructor for creating a book that represents a book in a collection to be created.
@@ -2084,26 +3160,13 @@ class Book
 		}
 		
 		// Convert the short name to US-ASCII
-		try
-		{
-			byte[] shortNameBytes = name.getBytes("US-ASCII");
-			fileName = new String(shortNameBytes, "US-ASCII");
-			
-			// Replace '?' with '_' a question mark indicates an unrepresentable character
-			String temp = fileName.replace('?', '_');
-            fileName = temp;
-			
-			//System.out.println("Short name: " + shortName);
-		}
-		catch (UnsupportedEncodingException e)
-		{
-			System.out.println(e.toString());
-		}
+		fileName = toFileName(name);
 		
 		//System.out.println("Writing " + name + "...");
 		int chapterNumber = 0;
+		Vector sources = new Vector();
 		
-		// Find each chapter
+		// Find each chapter, they are converted by getChapter() only if they are used
 		for (Enumeration e = book.getChildren(); e.hasMoreElements(); )
 		{
 			XMLObject xml = (XMLObject) e.nextElement();
@@ -2119,14 +3182,40 @@ class Book
 					chapterNumber = startChapter = creator.getChapterNumber(xml);
 				}
 			
-				Chapter chapter = new Chapter();
-				creator.parseChapter(xml, chapter);
-				
-				//System.out.println("Processing " + name + " " + chapterNumber + " with " + chapter.verses.size() + " verses.");
-				chapters.addElement(chapter);
+				chapters.addElement(null);
+				sources.addElement(xml);
 				chapterNumber++;
 			}
 		}
+		
+		if (sources.size() > 0)
+		{
+			chapterSources = (XMLObject[]) sources.toArray(new XMLObject[sources.size()]);
+			this.creator = creator;
+		}
+	}
+	
+	/**
+	 * Returns a chapter, converting it from the source XML the first time
+	 * it is asked for. Chapters outside every collection are never converted.
+	 * @param index Index of the chapter in chapters, not its chapter number.
+	 **/
+	public synchronized Chapter getChapter(int index)
+	{
+		Chapter chapter = (Chapter) chapters.elementAt(index);
+		
+		if (chapter == null)
+		{
+			chapter = new Chapter();
+			creator.parseChapter(chapterSources[index], chapter);
+			chapter.trimToSize();
+			chapters.setElementAt(chapter, index);
+			
+			// The XML isn't needed any more
+			chapterSources[index] = null;
+		}
+		
+		return chapter;
 	}
 
         //USFM file format
@@ -2144,23 +3233,16 @@ class Book
                 }
                 fileName = fIn.getName();
                 
-                if (interpreter == null) {
-                    interpreter = new USFMParse();
-                    interpreter.sWJ = cSTYLE_RED;
-                    interpreter.emptyVerseString = GoBibleCreator.EmptyVerseString;
-
-					String configFilePath = new File(collectionsFile.getParent(), GoBibleCreator.usfmParseConfigFile).getAbsolutePath();
-
-                    System.out.printf( "Using USFM Parse Configuration file: %s\n", configFilePath);
-                    interpreter.readConfig(configFilePath );
-                }
+                // Each book gets its own parser so books can be parsed on separate threads
+                USFMParse interpreter = new USFMParse(prepareInterpreter(collectionsFile, cSTYLE_RED));
             
                 
                 USFMLex scanner = null;
                 USFMSymbol currentSymbol = USFMSymbol.initial();
                 String titleTag = sTitleTag.substring(1);
                 
-                scanner = new USFMLex(new BufferedReader(new InputStreamReader(new FileInputStream(fIn), fileCodepage)));
+                // The file is read in one go and decoded straight into the scanner's buffer
+                scanner = new USFMLex(new WholeFileReader(fIn, fileCodepage));
 
                 /* Find the tag preceding the book name */
                 LOOP: while ( true ) {
@@ -2176,6 +3258,7 @@ class Book
                             System.out.println("ERROR: Can not process the following book as there are no " + sTitleTag + " tags");
                             System.out.println("Filename:" + sFilename);
                             System.out.println("Please remove the book from the collection or fix the tags...");
+                            parseError = true;
                             return;
                 /* TODO: parsing abruptly halts ... could we just try? */
                         default:
@@ -2222,6 +3305,7 @@ class Book
                 interpreter.reset(currentSymbol, scanner);
 
                 while ( (c = interpreter.parseChapter()) != null) {
+                        c.trimToSize();
                         chapters.addElement(c);
                 }
 				
@@ -2230,27 +3314,86 @@ class Book
             {
                 System.out.println("Error: " + e.getMessage());
                 e.printStackTrace();
+                parseError = true;
             }
 	}
 
+	/**
+	 * Reads the USFM parse configuration the first time a build needs it.
+	 * Builds with the same configuration file and settings share the
+	 * configuration, unless the file has changed in between.
+	 * @return The parser holding the configuration shared by all books.
+	 **/
+	static synchronized USFMParse prepareInterpreter(File collectionsFile, char cSTYLE_RED)
+	{
+                BuildContext context = GoBibleCreator.context();
+                
+                if (context.interpreter == null) {
+					File configFile = new File(collectionsFile.getParent(), context.usfmParseConfigFile);
+					String configFilePath = configFile.getAbsolutePath();
+
+                    System.out.printf( "Using USFM Parse Configuration file: %s\n", configFilePath);
+                    
+                    String key = configFilePath + "\n" + configFile.lastModified() + "\n" + (int) cSTYLE_RED + "\n" + context.EmptyVerseString;
+                    context.interpreter = interpreters.get(key);
+                    
+                    if (context.interpreter == null) {
+                        context.interpreter = new USFMParse();
+                        context.interpreter.sWJ = cSTYLE_RED;
+                        context.interpreter.emptyVerseString = context.EmptyVerseString;
+                        context.interpreter.readConfig(configFilePath );
+                        interpreters.put(key, context.interpreter);
+                    }
+                }
+                
+                return context.interpreter;
+	}
+
+	/**
+	 * Converts a book name to US-ASCII so that it can be used for file names.
+	 * @param name Book name.
+	 * @return The name with unrepresentable characters replaced by '_'.
+	 **/
+	public static String toFileName(String name)
+	{
+		String fileName = null;
+		
+		try
+		{
+			byte[] shortNameBytes = name.getBytes("US-ASCII");
+			fileName = new String(shortNameBytes, "US-ASCII");
+			
+			// Replace '?' with '_' a question mark indicates an unrepresentable character
+			fileName = fileName.replace('?', '_');
+			
+			//System.out.println("Short name: " + shortName);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			System.out.println(e.toString());
+		}
+		
+		return fileName;
+	}
+
 	public boolean hasVerses()
 	{
 		int verseSize = 0;
 		for (int i = 0; i < chapters.size(); i++)
 		{
-			Chapter c = (Chapter) chapters.elementAt(i);
+			Chapter c = getChapter(i);
 
-			if (GoBibleCreator.EmptyVerseString == null)
+			if (GoBibleCreator.context().EmptyVerseString == null)
 			{
-				verseSize += c.allVerses.length();
+				verseSize += c.getLength();
 			}
 			else
 			{
-				for (Enumeration e = c.verses.elements(); e.hasMoreElements(); )
+				for (int j = 0; j < c.getVerseCount(); j++)
 				{
-					String verse = (String) e.nextElement();
+					String verse = c.getVerse(j);
 					// this isn't just the filler for an empty verse, so count it as data and stop looking
-					if (!GoBibleCreator.EmptyVerseString.equals(verse) && verse.length() > 0)
+					if (!GoBibleCreator.context().EmptyVerseString.equals(verse) && verse.length() > 0)
 					{
 						verseSize += verse.length();
 						break;
@@ -2264,13 +3407,180 @@ class Book
 	}
 }
 
+/**
+ * The verses of a chapter. The text of every verse is held one after the
+ * other in a single array, encoded in UTF-8 as it is written out, along
+ * with where each verse ends, rather than as a String per verse plus a
+ * copy of them all. The writers only need the text of the whole chapter
+ * and the length of each verse, which Go Bible counts in chars.
+ **/
 class Chapter
 {
-    //
-	public Vector verses = new Vector();
-	public StringBuffer allVerses = new StringBuffer();
-	public int fileNumber;
-
+	/** Text of all of the verses in UTF-8. **/
+	private byte[] text = new byte[256];
+	
+	/** Length of the text in bytes. **/
+	private int byteLength;
+	
+	/** Length of the text in chars. **/
+	private int length;
+	
+	/** Where each verse ends in text, in bytes. **/
+	private int[] verseEnds = new int[16];
+	
+	/** Where each verse ends in chars. **/
+	private int[] verseCharEnds = new int[16];
+	
+	private int verseCount;
+	
+	/**
+	 * Adds a verse to the end of the chapter. As with String.getBytes(),
+	 * a surrogate that isn't part of a pair is encoded as '?'.
+	 **/
+	public void addVerse(String verse)
+	{
+		int verseLength = verse.length();
+		
+		// A char takes at most 3 bytes, a surrogate pair 4 bytes for 2 chars
+		if (byteLength + verseLength * 3 > text.length)
+		{
+			text = Arrays.copyOf(text, Math.max(byteLength + verseLength * 3, text.length * 2));
+		}
+		
+		if (verseCount == verseEnds.length)
+		{
+			verseEnds = Arrays.copyOf(verseEnds, verseCount * 2);
+			verseCharEnds = Arrays.copyOf(verseCharEnds, verseCount * 2);
+		}
+		
+		for (int i = 0; i < verseLength; i++)
+		{
+			char c = verse.charAt(i);
+			
+			if (c < 0x80)
+			{
+				text[byteLength++] = (byte) c;
+			}
+			else if (c < 0x800)
+			{
+				text[byteLength++] = (byte) (0xc0 | (c >> 6));
+				text[byteLength++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				if (Character.isHighSurrogate(c) && i + 1 < verseLength && Character.isLowSurrogate(verse.charAt(i + 1)))
+				{
+					int codePoint = Character.toCodePoint(c, verse.charAt(++i));
+					
+					text[byteLength++] = (byte) (0xf0 | (codePoint >> 18));
+					text[byteLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+					text[byteLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+					text[byteLength++] = (byte) (0x80 | (codePoint & 0x3f));
+				}
+				else
+				{
+					text[byteLength++] = '?';
+				}
+			}
+			else
+			{
+				text[byteLength++] = (byte) (0xe0 | (c >> 12));
+				text[byteLength++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				text[byteLength++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		
+		length += verseLength;
+		verseEnds[verseCount] = byteLength;
+		verseCharEnds[verseCount] = length;
+		verseCount++;
+	}
+	
+	/**
+	 * Frees the room left for more verses, called once the chapter is complete.
+	 **/
+	public void trimToSize()
+	{
+		if (text.length > byteLength)
+		{
+			text = Arrays.copyOf(text, byteLength);
+		}
+		
+		if (verseEnds.length > verseCount)
+		{
+			verseEnds = Arrays.copyOf(verseEnds, verseCount);
+			verseCharEnds = Arrays.copyOf(verseCharEnds, verseCount);
+		}
+	}
+	
+	public int getVerseCount()
+	{
+		return verseCount;
+	}
+	
+	/**
+	 * Returns the length of a verse in chars without decoding it.
+	 * @param index Index of the verse, 0 for the first verse of the chapter.
+	 **/
+	public int getVerseLength(int index)
+	{
+		checkVerseIndex(index);
+		
+		return verseCharEnds[index] - ((index == 0) ? 0 : verseCharEnds[index - 1]);
+	}
+	
+	/**
+	 * Returns the text of a verse.
+	 * @param index Index of the verse, 0 for the first verse of the chapter.
+	 **/
+	public String getVerse(int index)
+	{
+		checkVerseIndex(index);
+		
+		int start = (index == 0) ? 0 : verseEnds[index - 1];
+		
+		return new String(text, start, verseEnds[index] - start, java.nio.charset.StandardCharsets.UTF_8);
+	}
+	
+	private void checkVerseIndex(int index)
+	{
+		if (index >= verseCount)
+		{
+			throw new ArrayIndexOutOfBoundsException(index + " >= " + verseCount);
+		}
+	}
+	
+	/**
+	 * Returns the length of the text of all of the verses in chars.
+	 **/
+	public int getLength()
+	{
+		return length;
+	}
+	
+	/**
+	 * Returns the length of the text of all of the verses in UTF-8 bytes.
+	 **/
+	public int getByteLength()
+	{
+		return byteLength;
+	}
+	
+	/**
+	 * Returns the text of all of the verses.
+	 **/
+	public String getText()
+	{
+		return new String(text, 0, byteLength, java.nio.charset.StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Writes out the text of all of the verses in UTF-8.
+	 **/
+	public void writeText(OutputStream output) throws IOException
+	{
+		output.write(text, 0, byteLength);
+	}
 }
 
 
@@ -0,0 +1,243 @@
+//
+//  JarCompression.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+
+/**
+ * Decides how each entry of a collection JAR is compressed, from the
+ * Compression properties in the Collections file:
+ * <pre>
+ *     Compression: [entry name pattern,] {Stored|Maximum|Default|Level N}
+ * </pre>
+ * The pattern may use * to match any characters, eg "Bible Data/*" or
+ * "*.png", and matches every entry if it is left out. Where several
+ * properties match an entry the last one is used. Entries that no property
+ * matches are deflated at the default level as before, and the entries of
+ * GoBibleCore are copied as they are compressed in GoBibleCore.jar.
+ * <p>
+ * Stored entries make the JAR larger to download, but the phone can read
+ * them without inflating them, which is what it spends most of its time on
+ * when opening a chapter from deflated data files.
+ * </p>
+ **/
+public class JarCompression
+{
+	/** Compression of the entries matching a pattern. **/
+	private static class Rule
+	{
+		String pattern;
+		int method;
+		int level;
+	}
+
+	private Vector<Rule> rules = new Vector<Rule>();
+
+	/**
+	 * Adds the value of a Compression property. Later rules take precedence
+	 * over earlier ones.
+	 * @throws IllegalArgumentException if the value can't be understood.
+	 **/
+	public void addRule(String value)
+	{
+		Rule rule = new Rule();
+		String policy = value;
+		rule.pattern = "*";
+
+		int comma = value.lastIndexOf(',');
+
+		if (comma != -1)
+		{
+			rule.pattern = value.substring(0, comma).trim();
+			policy = value.substring(comma + 1).trim();
+		}
+
+		String lowerPolicy = policy.toLowerCase();
+
+		if (lowerPolicy.startsWith("level"))
+		{
+			lowerPolicy = lowerPolicy.substring(5).trim();
+		}
+
+		rule.method = ZipEntry.DEFLATED;
+
+		if (lowerPolicy.equals("stored"))
+		{
+			rule.method = ZipEntry.STORED;
+			rule.level = Deflater.NO_COMPRESSION;
+		}
+		else if (lowerPolicy.equals("maximum"))
+		{
+			rule.level = Deflater.BEST_COMPRESSION;
+		}
+		else if (lowerPolicy.equals("default"))
+		{
+			rule.level = Deflater.DEFAULT_COMPRESSION;
+		}
+		else
+		{
+			try
+			{
+				rule.level = Integer.parseInt(lowerPolicy);
+			}
+			catch (NumberFormatException e)
+			{
+				rule.level = -1;
+			}
+
+			if (rule.level < Deflater.NO_COMPRESSION || rule.level > Deflater.BEST_COMPRESSION)
+			{
+				throw new IllegalArgumentException("Unknown compression '" + policy + "', use Stored, Maximum, Default or Level 0 to 9");
+			}
+		}
+
+		if (rule.pattern.length() == 0)
+		{
+			throw new IllegalArgumentException("Empty entry name pattern");
+		}
+
+		rules.add(rule);
+	}
+
+	/**
+	 * Returns whether a Compression property applies to the entry, in which
+	 * case an entry copied from another JAR needs to be recompressed.
+	 **/
+	public boolean matches(String entryName)
+	{
+		return getRule(entryName) != null;
+	}
+
+	/**
+	 * Sets the compression method and level of the stream for the next entry
+	 * put into it.
+	 **/
+	public void apply(JarOutputStream jarOutputStream, String entryName)
+	{
+		Rule rule = getRule(entryName);
+
+		if (rule != null)
+		{
+			jarOutputStream.setMethod(rule.method);
+			jarOutputStream.setLevel(rule.level);
+		}
+		else
+		{
+			jarOutputStream.setMethod(ZipEntry.DEFLATED);
+			jarOutputStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+		}
+	}
+
+	private Rule getRule(String entryName)
+	{
+		for (int i = rules.size() - 1; i >= 0; i--)
+		{
+			if (matches(rules.get(i).pattern, entryName))
+			{
+				return rules.get(i);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Matches a name against a pattern where * matches any characters.
+	 **/
+	static boolean matches(String pattern, String name)
+	{
+		int p = 0, n = 0;
+
+		// Position after the last * seen and the name position it was tried from
+		int starPattern = -1, starName = 0;
+
+		while (n < name.length())
+		{
+			if (p < pattern.length() && pattern.charAt(p) == '*')
+			{
+				starPattern = ++p;
+				starName = n;
+			}
+			else if (p < pattern.length() && pattern.charAt(p) == name.charAt(n))
+			{
+				p++;
+				n++;
+			}
+			else if (starPattern != -1)
+			{
+				// Let the last * match one more character
+				p = starPattern;
+				n = ++starName;
+			}
+			else
+			{
+				return false;
+			}
+		}
+
+		while (p < pattern.length() && pattern.charAt(p) == '*')
+		{
+			p++;
+		}
+
+		return p == pattern.length();
+	}
+
+	/**
+	 * Describes the size of a JAR that has been written and estimates how
+	 * much the phone has to inflate to read its Bible Data.
+	 **/
+	public static String describe(File jarFile) throws IOException
+	{
+		long size = 0, compressedSize = 0;
+		long deflatedSize = 0;
+		int dataFiles = 0;
+		long dataFileSize = 0;
+
+		for (RawJarEntry entry : RawJarEntry.read(jarFile).values())
+		{
+			if (!entry.name.startsWith("Bible Data/"))
+			{
+				continue;
+			}
+
+			size += entry.size;
+			compressedSize += entry.compressedSize;
+
+			if (entry.method == ZipEntry.DEFLATED)
+			{
+				deflatedSize += entry.size;
+
+				// The data files, rather than the indexes, are inflated every time a chapter is opened
+				if (!entry.name.endsWith("/Index"))
+				{
+					dataFiles++;
+					dataFileSize += entry.size;
+				}
+			}
+		}
+
+		String description = jarFile.getName() + ": " + jarFile.length() + " bytes, Bible Data " + compressedSize + " bytes compressed from " + size + " bytes.\n";
+
+		if (deflatedSize == 0)
+		{
+			return description + "Estimated inflate cost: none, the Bible Data is stored.";
+		}
+
+		description += "Estimated inflate cost: " + deflatedSize + " bytes of Bible Data are deflated";
+
+		if (dataFiles > 0)
+		{
+			description += ", " + (dataFileSize / dataFiles) + " bytes inflated on average for each data file read";
+		}
+
+		return description + ".";
+	}
+}
@@ -0,0 +1,357 @@
+//
+//  LiteralReplacer.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.util.*;
+
+/**
+ * Performs the ReplaceLiteral rules of the USFM parse configuration. All of
+ * the search strings are compiled into a single Aho-Corasick automaton so
+ * that a text run is scanned once, however many rules there are.
+ * <p>
+ * The result is the same as applying the rules one after another where the
+ * text inserted by a rule is never matched by a later rule: an earlier rule
+ * takes priority over a later rule, and each rule replaces its occurrences
+ * from left to right without overlapping, as String.replace() does. The
+ * occurrences of all rules are found in the single scan and then the
+ * rules are given their occurrences in order.
+ * </p>
+ * <p>
+ * The compiled automaton is never changed so it can be shared, but the
+ * buffers used while replacing are not. Each thread needs its own
+ * LiteralReplacer, see LiteralReplacer(LiteralReplacer).
+ * </p>
+ **/
+public class LiteralReplacer
+{
+	/** Search string of each rule. **/
+	private String[] needles;
+
+	/** Replacement of each rule. **/
+	private String[] replacements;
+
+	/** Characters of the transitions out of each state, sorted. **/
+	private char[][] edgeChars;
+
+	/** States the transitions go to, in the same order as edgeChars. **/
+	private int[][] edgeTargets;
+
+	/** State to fall back to when a state has no transition for a character. **/
+	private int[] fail;
+
+	/** Rule whose search string ends at each state, or -1 if none. **/
+	private int[] ruleAt;
+
+	/** Nearest state along the fail links that ends a search string, or -1. **/
+	private int[] outputLink;
+
+	// Buffers used while replacing, see replace()
+	private int[] matchStarts = new int[16];
+	private int[] matchRules = new int[16];
+	private int[] sortedStarts = new int[16];
+	private int[] ruleStart;
+	private int[] claimed = new int[256];
+	private char[] chars = new char[256];
+
+	/**
+	 * Compiles the rules.
+	 * @param rules Search strings and replacements in order of priority.
+	 * Rules with an empty search string are ignored.
+	 **/
+	public LiteralReplacer(List<TwoString> rules)
+	{
+		int ruleCount = rules.size();
+
+		needles = new String[ruleCount];
+		replacements = new String[ruleCount];
+
+		// Build the trie of the search strings
+		ArrayList<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+		ArrayList<Integer> rulesAt = new ArrayList<Integer>();
+
+		trie.add(new TreeMap<Character, Integer>());
+		rulesAt.add(-1);
+
+		for (int rule = 0; rule < ruleCount; rule++)
+		{
+			needles[rule] = rules.get(rule).first;
+			replacements[rule] = rules.get(rule).second;
+
+			if (needles[rule].length() == 0)
+			{
+				continue;
+			}
+
+			int state = 0;
+
+			for (int i = 0; i < needles[rule].length(); i++)
+			{
+				Integer next = trie.get(state).get(needles[rule].charAt(i));
+
+				if (next == null)
+				{
+					next = trie.size();
+					trie.add(new TreeMap<Character, Integer>());
+					rulesAt.add(-1);
+					trie.get(state).put(needles[rule].charAt(i), next);
+				}
+
+				state = next;
+			}
+
+			// A rule repeating the search string of an earlier rule never gets any occurrences
+			if (rulesAt.get(state) == -1)
+			{
+				rulesAt.set(state, rule);
+			}
+		}
+
+		int stateCount = trie.size();
+
+		edgeChars = new char[stateCount][];
+		edgeTargets = new int[stateCount][];
+		fail = new int[stateCount];
+		ruleAt = new int[stateCount];
+		outputLink = new int[stateCount];
+
+		for (int state = 0; state < stateCount; state++)
+		{
+			TreeMap<Character, Integer> edges = trie.get(state);
+
+			edgeChars[state] = new char[edges.size()];
+			edgeTargets[state] = new int[edges.size()];
+
+			int i = 0;
+			for (Map.Entry<Character, Integer> edge : edges.entrySet())
+			{
+				edgeChars[state][i] = edge.getKey();
+				edgeTargets[state][i] = edge.getValue();
+				i++;
+			}
+
+			ruleAt[state] = rulesAt.get(state);
+		}
+
+		// Work out the fail links breadth first so that shorter states are done first
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+
+		fail[0] = 0;
+		outputLink[0] = -1;
+
+		for (int i = 0; i < edgeTargets[0].length; i++)
+		{
+			fail[edgeTargets[0][i]] = 0;
+			outputLink[edgeTargets[0][i]] = -1;
+			queue.add(edgeTargets[0][i]);
+		}
+
+		while (!queue.isEmpty())
+		{
+			int state = queue.removeFirst();
+
+			for (int i = 0; i < edgeTargets[state].length; i++)
+			{
+				int target = edgeTargets[state][i];
+				int fallback = next(fail[state], edgeChars[state][i]);
+
+				fail[target] = fallback;
+				outputLink[target] = (ruleAt[fallback] != -1) ? fallback : outputLink[fallback];
+				queue.add(target);
+			}
+		}
+
+		ruleStart = new int[ruleCount + 1];
+	}
+
+	/**
+	 * Creates a replacer that shares the compiled rules of another, with its
+	 * own buffers so that it can be used on a different thread.
+	 **/
+	public LiteralReplacer(LiteralReplacer replacer)
+	{
+		needles = replacer.needles;
+		replacements = replacer.replacements;
+		edgeChars = replacer.edgeChars;
+		edgeTargets = replacer.edgeTargets;
+		fail = replacer.fail;
+		ruleAt = replacer.ruleAt;
+		outputLink = replacer.outputLink;
+		ruleStart = new int[needles.length + 1];
+	}
+
+	/**
+	 * Returns the state reached from a state with a character.
+	 **/
+	private int next(int state, char c)
+	{
+		while (true)
+		{
+			int i = Arrays.binarySearch(edgeChars[state], c);
+
+			if (i >= 0)
+			{
+				return edgeTargets[state][i];
+			}
+
+			if (state == 0)
+			{
+				return 0;
+			}
+
+			state = fail[state];
+		}
+	}
+
+	/**
+	 * Appends text to a buffer with the rules applied.
+	 * @param text Text to replace in.
+	 * @param out Verse the result is appended to.
+	 **/
+	public void replace(String text, VerseBuilder out)
+	{
+		int length = text.length();
+
+		if (chars.length < length)
+		{
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+
+		text.getChars(0, length, chars, 0);
+		replace(chars, 0, length, out);
+	}
+
+	/**
+	 * Appends part of a char array to a buffer with the rules applied.
+	 * @param text Array holding the text to replace in.
+	 * @param offset Start of the text in the array.
+	 * @param length Length of the text.
+	 * @param out Verse the result is appended to.
+	 **/
+	public void replace(char[] text, int offset, int length, VerseBuilder out)
+	{
+		int matchCount = 0;
+
+		// Find every occurrence of every search string
+		int state = 0;
+
+		for (int i = 0; i < length; i++)
+		{
+			state = next(state, text[offset + i]);
+
+			for (int s = (ruleAt[state] != -1) ? state : outputLink[state]; s != -1; s = outputLink[s])
+			{
+				if (matchCount == matchStarts.length)
+				{
+					matchStarts = Arrays.copyOf(matchStarts, matchCount * 2);
+					matchRules = Arrays.copyOf(matchRules, matchCount * 2);
+				}
+
+				int rule = ruleAt[s];
+
+				matchStarts[matchCount] = i + 1 - needles[rule].length();
+				matchRules[matchCount] = rule;
+				matchCount++;
+			}
+		}
+
+		if (matchCount == 0)
+		{
+			out.append(text, offset, length);
+			return;
+		}
+
+		// Group the occurrences by rule, they remain in order of position within each rule
+		Arrays.fill(ruleStart, 0);
+
+		for (int i = 0; i < matchCount; i++)
+		{
+			ruleStart[matchRules[i] + 1]++;
+		}
+
+		for (int rule = 0; rule < needles.length; rule++)
+		{
+			ruleStart[rule + 1] += ruleStart[rule];
+		}
+
+		if (sortedStarts.length < matchCount)
+		{
+			sortedStarts = new int[matchStarts.length];
+		}
+
+		for (int i = 0; i < matchCount; i++)
+		{
+			sortedStarts[ruleStart[matchRules[i]]++] = matchStarts[i];
+		}
+
+		// ruleStart now holds where each rule's occurrences end, shift it back
+		for (int rule = needles.length; rule > 0; rule--)
+		{
+			ruleStart[rule] = ruleStart[rule - 1];
+		}
+		ruleStart[0] = 0;
+
+		// Give each rule in turn the occurrences that are still free. claimed
+		// holds the rule + 1 at the start of a replaced occurrence, -1 for the
+		// rest of it and 0 for characters that haven't been replaced.
+		if (claimed.length < length)
+		{
+			claimed = new int[Math.max(length, claimed.length * 2)];
+		}
+		Arrays.fill(claimed, 0, length, 0);
+
+		for (int rule = 0; rule < needles.length; rule++)
+		{
+			int needleLength = needles[rule].length();
+			int end = 0;
+
+			OCCURRENCES: for (int i = ruleStart[rule]; i < ruleStart[rule + 1]; i++)
+			{
+				int start = sortedStarts[i];
+
+				if (start < end)
+				{
+					continue;
+				}
+
+				for (int j = start; j < start + needleLength; j++)
+				{
+					if (claimed[j] != 0)
+					{
+						continue OCCURRENCES;
+					}
+				}
+
+				claimed[start] = rule + 1;
+				for (int j = start + 1; j < start + needleLength; j++)
+				{
+					claimed[j] = -1;
+				}
+
+				end = start + needleLength;
+			}
+		}
+
+		// Copy the text, substituting the claimed occurrences
+		int copied = 0;
+
+		for (int i = 0; i < length; i++)
+		{
+			if (claimed[i] > 0)
+			{
+				int rule = claimed[i] - 1;
+
+				out.append(text, offset + copied, i - copied);
+				out.append(replacements[rule]);
+
+				i += needles[rule].length() - 1;
+				copied = i + 1;
+			}
+		}
+
+		out.append(text, offset + copied, length - copied);
+	}
+}
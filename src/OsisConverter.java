@@ -114,10 +114,9 @@ public class OsisConverter extends GoBibleCreator
 ////						}
 ////					}
 
-				if (verseString.length() == 0 && GoBibleCreator.EmptyVerseString != null)
-					verseString = GoBibleCreator.EmptyVerseString;
-				chapter.verses.addElement(verseString);
-				chapter.allVerses.append(verseString);
+				if (verseString.length() == 0 && GoBibleCreator.context().EmptyVerseString != null)
+					verseString = GoBibleCreator.context().EmptyVerseString;
+				chapter.addVerse(verseString);
 			}
 		}
 
@@ -128,6 +127,9 @@ public class OsisConverter extends GoBibleCreator
 	{
 		//int verse = 1;
 		
+		// Reused for each verse
+		VerseBuilder verseBuilder = new VerseBuilder(false);
+		
 		// Find each verse
 		for (Enumeration e = xml.getChildren(); e.hasMoreElements(); )
 		{
@@ -147,7 +149,9 @@ public class OsisConverter extends GoBibleCreator
 				//System.out.println("Parsing verse " + verse++);
 				
 				// Extract verse data and add verse
-				String verseString = extractCDATA(xmlVerse);
+				verseBuilder.clear();
+				extractCDATA(xmlVerse, verseBuilder);
+				String verseString = verseBuilder.toString();
 
 				// Issue 42: Christs words in red in OSIS files
 				/*
@@ -171,11 +175,10 @@ public class OsisConverter extends GoBibleCreator
 				 * */
 
 
-				if (verseString.length() == 0 && GoBibleCreator.EmptyVerseString != null)
-					verseString = GoBibleCreator.EmptyVerseString;
+				if (verseString.length() == 0 && GoBibleCreator.context().EmptyVerseString != null)
+					verseString = GoBibleCreator.context().EmptyVerseString;
 				
-				chapter.verses.addElement(verseString);
-				chapter.allVerses.append(verseString);
+				chapter.addVerse(verseString);
 			}
 		}		
 	}
@@ -0,0 +1,327 @@
+//
+//  OsisStreamConverter.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+import javax.xml.stream.*;
+
+/**
+ * Reads an OSIS file one element at a time and builds the Book and Chapter
+ * objects as the verses go past, rather than first building an XMLObject
+ * tree of the whole file as OsisConverter does. Only the verses of the
+ * chapter currently being read are held as text, so memory use no longer
+ * grows with the size of the source file.
+ * <p>
+ * The structure that is recognised is the same as OsisConverter:
+ * osis / osisText / testament div / book div / chapter / verse, where
+ * the text of a verse excludes anything within sup, reference or title tags.
+ * </p>
+ **/
+public class OsisStreamConverter
+{
+	/** Tags whose contents are never part of the verse text. See GoBibleCreator.extractCDATA(). **/
+	private final static String EXCLUDED_TAGS[] = {"sup", "reference", "title"};
+
+	/** Depth of the element currently being read, the osis tag is at depth 1. **/
+	private int depth;
+
+	/** Depths of the enclosing structural elements, or -1 if not inside one. **/
+	private int bodyDepth, testamentDepth, bookDepth, chapterDepth, verseDepth, excludedDepth;
+
+	/** Set once the first osisText element has been closed, later ones are ignored. **/
+	private boolean bodyRead;
+
+	/** Text between the last two tags, only kept if it isn't all white space. **/
+	private StringBuilder pendingText = new StringBuilder();
+
+	/** Text of the verse currently being read. **/
+	private VerseBuilder verseText = new VerseBuilder(false);
+
+	private Book book;
+	private Chapter chapter;
+
+	private HashMap books;
+
+	/**
+	 * Parses the OSIS file.
+	 * @param osisFile OSIS XML file.
+	 * @return HashMap of Book objects indexed by book name, or null if the
+	 * file is not OSIS.
+	 **/
+	public HashMap parse(File osisFile) throws IOException, XMLStreamException
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+		InputStream inputStream = new BufferedInputStream(new FileInputStream(osisFile), 1 << 16);
+
+		try
+		{
+			XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+
+			return parse(reader);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Parses OSIS from an already open reader.
+	 **/
+	public HashMap parse(XMLStreamReader reader) throws XMLStreamException
+	{
+		books = new HashMap();
+		depth = 0;
+		bodyDepth = testamentDepth = bookDepth = chapterDepth = verseDepth = excludedDepth = -1;
+		bodyRead = false;
+
+		while (reader.hasNext())
+		{
+			switch (reader.next())
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					flushText();
+					depth++;
+
+					if (depth == 1 && !reader.getLocalName().equalsIgnoreCase(OsisConverter.OSIS_TAG))
+					{
+						// Not an OSIS file
+						return null;
+					}
+
+					startElement(reader);
+					break;
+
+				case XMLStreamConstants.END_ELEMENT:
+					flushText();
+					endElement();
+					depth--;
+					break;
+
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					pendingText.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					pendingText.append(reader.getText());
+					break;
+
+				case XMLStreamConstants.COMMENT:
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					// These end a run of text just as a tag does
+					flushText();
+					break;
+			}
+		}
+
+		reader.close();
+
+		return books;
+	}
+
+	private void startElement(XMLStreamReader reader)
+	{
+		String tag = reader.getLocalName();
+
+		if (verseDepth != -1)
+		{
+			// Inside a verse, look out for tags whose contents are to be left out
+			if (excludedDepth == -1)
+			{
+				for (int i = 0; i < EXCLUDED_TAGS.length; i++)
+				{
+					if (tag.equals(EXCLUDED_TAGS[i]))
+					{
+						excludedDepth = depth;
+						break;
+					}
+				}
+			}
+		}
+		else if (bodyDepth == -1)
+		{
+			if (depth == 2 && !bodyRead && tag.equalsIgnoreCase(OsisConverter.OSIS_BODY_TAG))
+			{
+				bodyDepth = depth;
+			}
+		}
+		else if (testamentDepth == -1)
+		{
+			if (depth == bodyDepth + 1)
+			{
+				for (int i = 0; i < OsisConverter.TESTAMENT_TAGS.length; i++)
+				{
+					if (tag.equals(OsisConverter.TESTAMENT_TAGS[i]))
+					{
+						testamentDepth = depth;
+						break;
+					}
+				}
+			}
+		}
+		else if (bookDepth == -1)
+		{
+			if (depth == testamentDepth + 1 && tag.equals(OsisConverter.BOOK_TAG))
+			{
+				startBook(reader);
+			}
+		}
+		else if (chapterDepth == -1)
+		{
+			if (depth == bookDepth + 1 && (tag.equals(OsisConverter.CHAPTER_TAG_CHAPTER) || tag.equals(OsisConverter.CHAPTER_TAG_DIV)))
+			{
+				startChapter(reader);
+			}
+		}
+		else if (depth == chapterDepth + 1 && tag.equals(OsisConverter.VERSE_TAG))
+		{
+			verseDepth = depth;
+			verseText.clear();
+		}
+	}
+
+	private void endElement()
+	{
+		if (depth == excludedDepth)
+		{
+			excludedDepth = -1;
+		}
+		else if (depth == verseDepth)
+		{
+			String verseString = verseText.toString();
+
+			if (verseString.length() == 0 && GoBibleCreator.context().EmptyVerseString != null)
+				verseString = GoBibleCreator.context().EmptyVerseString;
+
+			chapter.addVerse(verseString);
+
+			verseDepth = -1;
+		}
+		else if (depth == chapterDepth)
+		{
+			chapter.trimToSize();
+			book.chapters.addElement(chapter);
+			chapter = null;
+			chapterDepth = -1;
+		}
+		else if (depth == bookDepth)
+		{
+			endBook();
+		}
+		else if (depth == testamentDepth)
+		{
+			testamentDepth = -1;
+		}
+		else if (depth == bodyDepth)
+		{
+			bodyDepth = -1;
+			bodyRead = true;
+		}
+	}
+
+	private void startBook(XMLStreamReader reader)
+	{
+		String name = getAttribute(reader, OsisConverter.BOOK_SHORT_NAME_ATTRIBUTE);
+
+		if (name == null)
+		{
+			System.out.println("Error: no book name");
+			name = "*Error no book name*";
+		}
+
+		book = new Book(name, -1, -1);
+		book.fileName = Book.toFileName(name);
+		bookDepth = depth;
+	}
+
+	private void endBook()
+	{
+		// Check to see if the book has any verses in it, log an error if it doesn't'
+		if (!book.hasVerses())
+		{
+			System.out.println("Error: Book (" + book.name+") doesn't contain any verses.");
+		}
+
+		// Add book to the lookup table
+		books.put(book.name, book);
+
+		GoBibleCreator.context().bookNames.add(book.name);
+
+		book = null;
+		bookDepth = -1;
+	}
+
+	private void startChapter(XMLStreamReader reader)
+	{
+		// Only the first chapter's number is used, the rest are assumed to follow on
+		if (book.startChapter == -1)
+		{
+			String title = getAttribute(reader, OsisConverter.CHAPTER_NUMBER_ATTRIBUTE);
+
+			if (title == null)
+			{
+				title = "*Error no " + OsisConverter.CHAPTER_NUMBER_ATTRIBUTE + " attribute*";
+			}
+
+			book.startChapter = Integer.parseInt(title.substring(title.lastIndexOf('.') + 1));
+		}
+
+		chapter = new Chapter();
+		chapterDepth = depth;
+	}
+
+	/**
+	 * Adds the text read since the last tag to the current verse. As with
+	 * XMLParser, text that is only white space is dropped.
+	 **/
+	private void flushText()
+	{
+		int length = pendingText.length();
+
+		if (length == 0)
+		{
+			return;
+		}
+
+		if (verseDepth != -1 && excludedDepth == -1)
+		{
+			for (int i = 0; i < length; i++)
+			{
+				if (pendingText.charAt(i) > ' ')
+				{
+					verseText.append(pendingText);
+					break;
+				}
+			}
+		}
+
+		pendingText.setLength(0);
+	}
+
+	/**
+	 * Returns the value of the named attribute, ignoring case as XMLObject does.
+	 **/
+	private static String getAttribute(XMLStreamReader reader, String name)
+	{
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+		{
+			if (reader.getAttributeLocalName(i).equalsIgnoreCase(name))
+			{
+				return reader.getAttributeValue(i);
+			}
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,202 @@
+//
+//  RawJarEntry.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * An entry of a JAR file holding its compressed data, so that it can be
+ * copied into another JAR by RawJarOutputStream without being recompressed.
+ **/
+class RawJarEntry
+{
+	private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private final static int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private final static int END_HEADER_SIGNATURE = 0x06054b50;
+
+	/** Entry name. **/
+	String name;
+
+	/** Entry name as it is written in the ZIP file. **/
+	byte[] nameBytes;
+
+	/** General purpose flags. **/
+	int flags;
+
+	/** Compression method, ZipEntry.STORED or ZipEntry.DEFLATED. **/
+	int method;
+
+	/** Modification time in MS-DOS format. **/
+	long time;
+
+	long crc;
+	long compressedSize;
+	long size;
+
+	/** Compressed data. **/
+	byte[] data;
+
+	/** Offset of the local header within the JAR being written. **/
+	long offset;
+
+	RawJarEntry(String name)
+	{
+		this.name = name;
+
+		try
+		{
+			nameBytes = name.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			nameBytes = name.getBytes();
+		}
+
+		// Only flag the name as UTF-8 if it needs it, as JarOutputStream does
+		flags = (nameBytes.length != name.length()) ? RawJarOutputStream.FLAG_UTF8 : 0;
+	}
+
+	RawJarEntry(RawJarEntry entry)
+	{
+		name = entry.name;
+		nameBytes = entry.nameBytes;
+		flags = entry.flags;
+		method = entry.method;
+		time = entry.time;
+		crc = entry.crc;
+		compressedSize = entry.compressedSize;
+		size = entry.size;
+		data = entry.data;
+	}
+
+	/**
+	 * Reads all of the entries of a JAR file along with their compressed data.
+	 * @param file JAR file to read.
+	 * @return Entries indexed by name, in the order of the central directory.
+	 * @throws ZipException if the file uses a ZIP feature that can't be copied,
+	 * such as ZIP64 or encryption.
+	 **/
+	static LinkedHashMap<String, RawJarEntry> read(File file) throws IOException
+	{
+		byte[] zip = new byte[(int) file.length()];
+
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			input.readFully(zip);
+		}
+		finally
+		{
+			input.close();
+		}
+
+		// Find the end of central directory record, searching back over any comment
+		int end = zip.length - 22;
+		while (end >= 0 && readInt(zip, end) != END_HEADER_SIGNATURE)
+		{
+			end--;
+		}
+
+		if (end < 0)
+		{
+			throw new ZipException("End of central directory not found: " + file.getName());
+		}
+
+		int count = readShort(zip, end + 10);
+		long centralOffset = readInt(zip, end + 16);
+
+		if (centralOffset == 0xffffffffL || count == 0xffff)
+		{
+			throw new ZipException("ZIP64 is not supported: " + file.getName());
+		}
+
+		LinkedHashMap<String, RawJarEntry> entries = new LinkedHashMap<String, RawJarEntry>();
+
+		int position = (int) centralOffset;
+
+		for (int i = 0; i < count; i++)
+		{
+			if (readInt(zip, position) != CENTRAL_HEADER_SIGNATURE)
+			{
+				throw new ZipException("Invalid central directory: " + file.getName());
+			}
+
+			int flags = readShort(zip, position + 8);
+			int nameLength = readShort(zip, position + 28);
+			int extraLength = readShort(zip, position + 30);
+			int commentLength = readShort(zip, position + 32);
+
+			if ((flags & 1) != 0)
+			{
+				throw new ZipException("Encrypted entries are not supported: " + file.getName());
+			}
+
+			String name = new String(zip, position + 46, nameLength, ((flags & RawJarOutputStream.FLAG_UTF8) != 0) ? "UTF-8" : "ISO-8859-1");
+
+			RawJarEntry entry = new RawJarEntry(name);
+			entry.method = readShort(zip, position + 10);
+			entry.time = readInt(zip, position + 12);
+			entry.crc = readInt(zip, position + 16);
+			entry.compressedSize = readInt(zip, position + 20);
+			entry.size = readInt(zip, position + 24);
+
+			// Skip over the local header to the data
+			int local = (int) readInt(zip, position + 42);
+
+			if (readInt(zip, local) != LOCAL_HEADER_SIGNATURE)
+			{
+				throw new ZipException("Invalid local header: " + name);
+			}
+
+			int dataStart = local + 30 + readShort(zip, local + 26) + readShort(zip, local + 28);
+
+			entry.data = new byte[(int) entry.compressedSize];
+			System.arraycopy(zip, dataStart, entry.data, 0, entry.data.length);
+
+			entries.put(name, entry);
+
+			position += 46 + nameLength + extraLength + commentLength;
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Converts a Java time to the MS-DOS date and time used in ZIP files.
+	 **/
+	static long toDosTime(long time)
+	{
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+
+		int year = calendar.get(Calendar.YEAR);
+
+		if (year < 1980)
+		{
+			return (1 << 21) | (1 << 16);
+		}
+
+		return ((long) (year - 1980) << 25)
+			| ((calendar.get(Calendar.MONTH) + 1) << 21)
+			| (calendar.get(Calendar.DAY_OF_MONTH) << 16)
+			| (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+			| (calendar.get(Calendar.MINUTE) << 5)
+			| (calendar.get(Calendar.SECOND) >> 1);
+	}
+
+	private static int readShort(byte[] b, int off)
+	{
+		return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+	}
+
+	private static long readInt(byte[] b, int off)
+	{
+		return (readShort(b, off) | ((long) readShort(b, off + 2) << 16)) & 0xffffffffL;
+	}
+}
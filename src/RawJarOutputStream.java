@@ -0,0 +1,298 @@
+//
+//  RawJarOutputStream.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+
+/**
+ * A JarOutputStream that can also copy entries from another JAR without
+ * inflating and deflating them again. The already compressed bytes, CRC and
+ * sizes are written out as they are, see putRawEntry().
+ * <p>
+ * java.util.zip has no way of writing precompressed data so this class writes
+ * the ZIP format itself, replacing all of the writing done by
+ * ZipOutputStream. Each entry is held in memory until it is closed so that
+ * its sizes and CRC are known when its header is written. This is fine for
+ * Go Bible where the largest entries are the data files of around 24 KB.
+ * </p>
+ **/
+public class RawJarOutputStream extends JarOutputStream
+{
+	private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private final static int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private final static int END_HEADER_SIGNATURE = 0x06054b50;
+
+	/** General purpose flag indicating the entry name is UTF-8. **/
+	final static int FLAG_UTF8 = 0x800;
+
+	/** Number of bytes written to the underlying stream. **/
+	private long written = 0;
+
+	/** Entries written so far, for the central directory. **/
+	private Vector<RawJarEntry> entries = new Vector<RawJarEntry>();
+
+	/** Names of the entries written so far. **/
+	private HashSet<String> names = new HashSet<String>();
+
+	/** Entry currently being written, or null. **/
+	private RawJarEntry current = null;
+
+	/** Uncompressed data of the current entry. **/
+	private ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+
+	/** Deflate level of the current entry, the level when it was put. **/
+	private int entryLevel;
+
+	private int method = DEFLATED;
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	private Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private byte[] deflateBuffer = new byte[8192];
+
+	private boolean finished = false;
+
+	public RawJarOutputStream(OutputStream out) throws IOException
+	{
+		super(out);
+	}
+
+	/**
+	 * Creates the stream and writes the manifest as the first entry, as
+	 * JarOutputStream(OutputStream, Manifest) does.
+	 **/
+	public RawJarOutputStream(OutputStream out, Manifest manifest) throws IOException
+	{
+		super(out);
+
+		putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+		manifest.write(new BufferedOutputStream(this));
+		closeEntry();
+	}
+
+	public void setMethod(int method)
+	{
+		this.method = method;
+	}
+
+	public void setLevel(int level)
+	{
+		this.level = level;
+	}
+
+	public void setComment(String comment)
+	{
+	}
+
+	public void putNextEntry(ZipEntry zipEntry) throws IOException
+	{
+		closeEntry();
+
+		current = new RawJarEntry(zipEntry.getName());
+		current.method = (zipEntry.getMethod() != -1) ? zipEntry.getMethod() : method;
+		current.time = RawJarEntry.toDosTime((zipEntry.getTime() != -1) ? zipEntry.getTime() : System.currentTimeMillis());
+		entryLevel = level;
+
+		entryData.reset();
+	}
+
+	/**
+	 * Copies an entry that has already been compressed, typically one read
+	 * from another JAR with RawJarEntry.read().
+	 **/
+	public void putRawEntry(RawJarEntry rawEntry) throws IOException
+	{
+		closeEntry();
+
+		RawJarEntry entry = new RawJarEntry(rawEntry);
+		writeEntry(entry);
+	}
+
+	public void closeEntry() throws IOException
+	{
+		if (current == null)
+		{
+			return;
+		}
+
+		RawJarEntry entry = current;
+		current = null;
+
+		byte[] data = entryData.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+
+		entry.crc = crc.getValue();
+		entry.size = data.length;
+
+		if (entry.method == STORED)
+		{
+			entry.data = data;
+		}
+		else
+		{
+			deflater.reset();
+			deflater.setLevel(entryLevel);
+			deflater.setInput(data, 0, data.length);
+			deflater.finish();
+
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+
+			while (!deflater.finished())
+			{
+				int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+				compressed.write(deflateBuffer, 0, length);
+			}
+
+			entry.data = compressed.toByteArray();
+		}
+
+		entry.compressedSize = entry.data.length;
+
+		writeEntry(entry);
+	}
+
+	/**
+	 * Writes the local header and data of a complete entry.
+	 **/
+	private void writeEntry(RawJarEntry entry) throws IOException
+	{
+		if (!names.add(entry.name))
+		{
+			throw new ZipException("duplicate entry: " + entry.name);
+		}
+
+		entry.offset = written;
+
+		writeInt(LOCAL_HEADER_SIGNATURE);
+		writeShort(entry.method == STORED ? 10 : 20);
+		writeShort(entry.flags);
+		writeShort(entry.method);
+		writeInt(entry.time);
+		writeInt(entry.crc);
+		writeInt(entry.compressedSize);
+		writeInt(entry.size);
+		writeShort(entry.nameBytes.length);
+		writeShort(0);
+		writeBytes(entry.nameBytes, 0, entry.nameBytes.length);
+		writeBytes(entry.data, 0, entry.data.length);
+
+		// Only the header fields are needed for the central directory
+		entry.data = null;
+		entries.add(entry);
+	}
+
+	public void write(int b) throws IOException
+	{
+		if (current == null)
+		{
+			throw new ZipException("no current ZIP entry");
+		}
+
+		entryData.write(b);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (current == null)
+		{
+			throw new ZipException("no current ZIP entry");
+		}
+
+		entryData.write(b, off, len);
+	}
+
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Writes out the central directory.
+	 **/
+	public void finish() throws IOException
+	{
+		if (finished)
+		{
+			return;
+		}
+
+		closeEntry();
+
+		long centralOffset = written;
+
+		for (RawJarEntry entry : entries)
+		{
+			writeInt(CENTRAL_HEADER_SIGNATURE);
+			writeShort(20);
+			writeShort(entry.method == STORED ? 10 : 20);
+			writeShort(entry.flags);
+			writeShort(entry.method);
+			writeInt(entry.time);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			writeShort(entry.nameBytes.length);
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeInt(0);
+			writeInt(entry.offset);
+			writeBytes(entry.nameBytes, 0, entry.nameBytes.length);
+		}
+
+		long centralSize = written - centralOffset;
+
+		writeInt(END_HEADER_SIGNATURE);
+		writeShort(0);
+		writeShort(0);
+		writeShort(entries.size());
+		writeShort(entries.size());
+		writeInt(centralSize);
+		writeInt(centralOffset);
+		writeShort(0);
+
+		out.flush();
+
+		finished = true;
+	}
+
+	public void close() throws IOException
+	{
+		finish();
+		out.close();
+
+		deflater.end();
+		def.end();
+	}
+
+	private void writeShort(int value) throws IOException
+	{
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		written += 2;
+	}
+
+	private void writeInt(long value) throws IOException
+	{
+		out.write((int) (value & 0xff));
+		out.write((int) ((value >>> 8) & 0xff));
+		out.write((int) ((value >>> 16) & 0xff));
+		out.write((int) ((value >>> 24) & 0xff));
+		written += 4;
+	}
+
+	private void writeBytes(byte[] b, int off, int len) throws IOException
+	{
+		out.write(b, off, len);
+		written += len;
+	}
+}
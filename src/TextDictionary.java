@@ -0,0 +1,259 @@
+//
+//  TextDictionary.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Estimates how much smaller a collection's Bible Data would be if the words
+ * of its verses were replaced by references into a dictionary stored once
+ * for the whole collection, rather than each data file being deflated on its
+ * own and so relearning the same vocabulary.
+ * <p>
+ * GoBibleCore reads the data files as plain UTF-8 text, so the data files
+ * can't actually be written like this until it can decode them. Until then
+ * this reports what it would save, enabled with "Text-Dictionary: Estimate"
+ * in the Collections file. The estimate models each reference as a marker
+ * byte followed by a two byte index, and deflates both the dictionary and
+ * each encoded data file at the default level, just as the JAR would.
+ * </p>
+ **/
+public class TextDictionary
+{
+	/** Marker byte starting a reference, not a character that appears in verse text. **/
+	private final static int REFERENCE_MARKER = 2;
+
+	/** Length of a reference in bytes, the marker and the index. **/
+	private final static int REFERENCE_LENGTH = 3;
+
+	/** Most words a two byte index can refer to. **/
+	private final static int MAX_WORDS = 1 << 16;
+
+	/**
+	 * Builds the dictionary for a collection and compares the deflated size
+	 * of its data files with and without it.
+	 * @param collection Collection whose books are estimated.
+	 * @param books Books from the source text.
+	 * @return Description of the estimate.
+	 **/
+	public static String estimate(Collection collection, HashMap books)
+	{
+		// Count every word of every chapter in the collection
+		HashMap<String, int[]> counts = new HashMap<String, int[]>();
+
+		for (Enumeration e = collection.books.elements(); e.hasMoreElements(); )
+		{
+			Book collectionBook = (Book) e.nextElement();
+			Book xmlBook = (Book) books.get(collectionBook.name);
+
+			for (int i = collectionBook.startChapter; i <= collectionBook.endChapter; i++)
+			{
+				String text = xmlBook.getChapter(i - xmlBook.startChapter).getText();
+
+				for (int start = 0; start < text.length(); )
+				{
+					int end = wordEnd(text, start);
+
+					if (end > start)
+					{
+						String word = text.substring(start, end);
+						int[] count = counts.get(word);
+
+						if (count == null)
+						{
+							counts.put(word, new int[] {1});
+						}
+						else
+						{
+							count[0]++;
+						}
+
+						start = end;
+					}
+					else
+					{
+						start++;
+					}
+				}
+			}
+		}
+
+		// Keep the words that save more than they cost to store, most saved first
+		Vector<Map.Entry<String, int[]>> candidates = new Vector<Map.Entry<String, int[]>>();
+
+		for (Map.Entry<String, int[]> entry : counts.entrySet())
+		{
+			if (getSaving(entry) > 0)
+			{
+				candidates.add(entry);
+			}
+		}
+
+		Collections.sort(candidates, new Comparator<Map.Entry<String, int[]>>()
+		{
+			public int compare(Map.Entry<String, int[]> a, Map.Entry<String, int[]> b)
+			{
+				long difference = getSaving(b) - getSaving(a);
+				return difference < 0 ? -1 : (difference > 0 ? 1 : a.getKey().compareTo(b.getKey()));
+			}
+		});
+
+		HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+		ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+
+		for (int i = 0; i < candidates.size() && i < MAX_WORDS; i++)
+		{
+			String word = candidates.get(i).getKey();
+			dictionary.put(word, i);
+
+			byte[] bytes = toUTF8(word);
+			dictionaryBytes.write(bytes, 0, bytes.length);
+			dictionaryBytes.write(0);
+		}
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+		long dictionarySize = deflatedSize(deflater, dictionaryBytes.toByteArray());
+		long textSize = 0;
+		long encodedSize = 0;
+
+		// Deflate each data file as it is written and as it would be encoded
+		for (Enumeration e = collection.books.elements(); e.hasMoreElements(); )
+		{
+			Book collectionBook = (Book) e.nextElement();
+			Book xmlBook = (Book) books.get(collectionBook.name);
+
+			int[] fileNumbers = GoBibleCreator.getFileNumbers(collectionBook, xmlBook);
+			StringBuilder fileText = new StringBuilder();
+
+			for (int i = collectionBook.startChapter; i <= collectionBook.endChapter; i++)
+			{
+				fileText.append(xmlBook.getChapter(i - xmlBook.startChapter).getText());
+
+				int index = i - collectionBook.startChapter;
+
+				if (index == fileNumbers.length - 1 || fileNumbers[index + 1] != fileNumbers[index])
+				{
+					String text = fileText.toString();
+					textSize += deflatedSize(deflater, toUTF8(text));
+					encodedSize += deflatedSize(deflater, encode(text, dictionary));
+					fileText.setLength(0);
+				}
+			}
+		}
+
+		deflater.end();
+
+		long total = encodedSize + dictionarySize;
+
+		return "Text dictionary estimate: " + dictionary.size() + " word(s), " + dictionarySize + " bytes deflated. "
+			+ "Data files deflate to " + textSize + " bytes as text and " + encodedSize + " bytes encoded, "
+			+ total + " bytes with the dictionary"
+			+ (textSize > 0 ? " (" + Math.round(100.0 * (textSize - total) / textSize) + "% smaller)." : ".");
+	}
+
+	/**
+	 * Bytes saved by putting the word in the dictionary: each occurrence is
+	 * replaced by a reference, and the word is stored once followed by a 0.
+	 **/
+	private static long getSaving(Map.Entry<String, int[]> entry)
+	{
+		long length = toUTF8(entry.getKey()).length;
+		return entry.getValue()[0] * (length - REFERENCE_LENGTH) - (length + 1);
+	}
+
+	/**
+	 * Returns the end of the word starting at start, or start if there is no
+	 * word there. Words are runs of letters, digits and combining marks.
+	 **/
+	private static int wordEnd(String text, int start)
+	{
+		int end = start;
+
+		while (end < text.length())
+		{
+			int c = text.codePointAt(end);
+			int type = Character.getType(c);
+
+			if (!Character.isLetterOrDigit(c) && type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK)
+			{
+				break;
+			}
+
+			end += Character.charCount(c);
+		}
+
+		return end;
+	}
+
+	private static byte[] encode(String text, HashMap<String, Integer> dictionary)
+	{
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(text.length());
+		int plainStart = 0;
+
+		for (int start = 0; start < text.length(); )
+		{
+			int end = wordEnd(text, start);
+
+			if (end == start)
+			{
+				start++;
+				continue;
+			}
+
+			Integer index = dictionary.get(text.substring(start, end));
+
+			if (index != null)
+			{
+				byte[] plain = toUTF8(text.substring(plainStart, start));
+				encoded.write(plain, 0, plain.length);
+				encoded.write(REFERENCE_MARKER);
+				encoded.write(index >> 8);
+				encoded.write(index);
+				plainStart = end;
+			}
+
+			start = end;
+		}
+
+		byte[] plain = toUTF8(text.substring(plainStart));
+		encoded.write(plain, 0, plain.length);
+
+		return encoded.toByteArray();
+	}
+
+	private static long deflatedSize(Deflater deflater, byte[] data)
+	{
+		byte[] buffer = new byte[8192];
+
+		deflater.reset();
+		deflater.setInput(data, 0, data.length);
+		deflater.finish();
+
+		while (!deflater.finished())
+		{
+			deflater.deflate(buffer, 0, buffer.length);
+		}
+
+		return deflater.getBytesWritten();
+	}
+
+	private static byte[] toUTF8(String s)
+	{
+		try
+		{
+			return s.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// Every Java platform is required to support UTF-8
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -98,7 +98,10 @@ public class ThmlConverter extends GoBibleCreator
 		
 		// Contains the verse string as it is built from the XML
 		// Will be stored in the chapter when a new verse tag is encountered
-		String verse = null;
+		VerseBuilder verse = new VerseBuilder(false);
+		
+		// Set once the first verse tag has been found
+		boolean inVerse = false;
 		
 		// Find each paragraph
 		for (Enumeration e = xml.getChildren(); e.hasMoreElements(); )
@@ -111,18 +114,24 @@ public class ThmlConverter extends GoBibleCreator
 			if (xmlParagraph.getTag().equals(PARAGRAPH_TAG))
 			{
 				//System.out.println("Parsing paragraph " + paragraph++);
-				verse = parseParagraphs(xmlParagraph, chapter, verse);
+				inVerse = parseParagraphs(xmlParagraph, chapter, verse, inVerse);
 			}
 		}		
 
 		// If there was a last verse then add it
-		if (verse != null && !verse.equals(""))
+		if (inVerse && verse.length() > 0)
 		{
-			addNewVerse(chapter, verse);
+			addNewVerse(chapter, verse.toString());
 		}
 	}
 	
-	private String parseParagraphs(XMLObject paragraph, Chapter chapter, String verse)
+	/**
+	 * Adds the text of a paragraph to the verse, adding the verse to the
+	 * chapter and starting a new one at each verse tag.
+	 * @param inVerse Whether a verse tag has been found yet.
+	 * @return Whether a verse tag has been found by the end of the paragraph.
+	 */
+	private boolean parseParagraphs(XMLObject paragraph, Chapter chapter, VerseBuilder verse, boolean inVerse)
 	{
 		Enumeration e = paragraph.getChildren();
 		
@@ -134,21 +143,22 @@ public class ThmlConverter extends GoBibleCreator
 			// Test if this is a new verse
 			if (xml.getTag().equals(VERSE_TAG))
 			{
-				// If the last verse isn't null then add it
-				if (verse != null)
+				// If there is a last verse then add it
+				if (inVerse)
 				{
-					addNewVerse(chapter, verse);
+					addNewVerse(chapter, verse.toString());
 				}
 				
 				// Re-initialise the verse
-				verse = "";
+				verse.clear();
+				inVerse = true;
 			}
-			else if (verse != null)
+			else if (inVerse)
 			{
 				if (xml instanceof CDATA)
 				{
 					// This xml object is actually CDATA so append it to the verse
-					verse += xml.getTag();
+					verse.append(xml.getTag());
 				}
 				// Only extract the CDATA if this tag isn't a 'sup' tag which merely indicates the verse number
 				// also ignore span tags with class "chap" as these are just chapter numbers which we
@@ -156,27 +166,33 @@ public class ThmlConverter extends GoBibleCreator
 				else if (!xml.getTag().equals("sup") && 
 					!(xml.getTag().equals("span") && xml.getAttribute("class", "").equals("chap")))
 				{
-					String newVerseData = extractCDATA(xml);
-
-					// Only add the new verse data if it is non-empty
-					if (newVerseData.length() > 0)
+					// If the tag is a span tag with class="red" then we want to indicate that
+					// Christ's words are in red
+					if (xml.getTag().equals(RED_TAG) && xml.getAttribute(RED_TAG_ATTRIBUTE, "").equals(RED_TAG_VALUE))
 					{
-						// If the tag is a span tag with class="red" then we want to indicate that
-						// Christ's words are in red
-						if (xml.getTag().equals(RED_TAG) && xml.getAttribute(RED_TAG_ATTRIBUTE, "").equals(RED_TAG_VALUE))
+						int start = verse.length();
+						verse.append(STYLE_RED);
+						extractCDATA(xml, verse);
+
+						// Only keep the new verse data if it is non-empty
+						if (verse.length() == start + 1)
 						{
-							verse += STYLE_RED + newVerseData + STYLE_RED;
+							verse.setLength(start);
 						}
 						else
 						{
-							verse += newVerseData;
+							verse.append(STYLE_RED);
 						}
 					}
+					else
+					{
+						extractCDATA(xml, verse);
+					}
 				}
 			}
 		}
 		
-		return verse;
+		return inVerse;
 	}
 	
 	/**
@@ -196,9 +212,8 @@ public class ThmlConverter extends GoBibleCreator
 
 		//System.out.println(verseString);
 
-		if (verseString.length() == 0 && GoBibleCreator.EmptyVerseString != null)
-			verseString = GoBibleCreator.EmptyVerseString;
-		chapter.verses.addElement(verseString);
-		chapter.allVerses.append(verseString);		
+		if (verseString.length() == 0 && GoBibleCreator.context().EmptyVerseString != null)
+			verseString = GoBibleCreator.context().EmptyVerseString;
+		chapter.addVerse(verseString);
 	}
 }
@@ -0,0 +1,160 @@
+//
+//  ThreadConsole.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Lets a thread send what it prints to System.out and System.err somewhere
+ * of its own. Work that runs on several threads at once can then capture its
+ * console output and have it printed afterwards in the same order as if the
+ * work had been done one piece after another.
+ * <p>
+ * Redirects can be nested, eg a build whose output is being captured can
+ * itself capture the output of the threads working on it in parallel and
+ * replay it into its own captured output.
+ * </p>
+ **/
+public class ThreadConsole extends OutputStream
+{
+	/** Where the current thread's output goes, or null for the original stream. **/
+	private final static ThreadLocal<OutputStream> target = new ThreadLocal<OutputStream>();
+
+	/** Where the current thread's output went before each redirect that is still in effect. **/
+	private final static ThreadLocal<Vector<OutputStream>> previousTargets = new ThreadLocal<Vector<OutputStream>>()
+	{
+		protected Vector<OutputStream> initialValue()
+		{
+			return new Vector<OutputStream>();
+		}
+	};
+
+	/** The original System.out. **/
+	private static PrintStream originalOut = null;
+
+	/** The stream to write to when the thread hasn't been redirected. **/
+	private PrintStream original;
+
+	private ThreadConsole(PrintStream original)
+	{
+		this.original = original;
+	}
+
+	/**
+	 * Replaces System.out and System.err so that they can be redirected per
+	 * thread. Does nothing if this has already been done.
+	 **/
+	public static synchronized void install()
+	{
+		if (originalOut == null)
+		{
+			originalOut = System.out;
+
+			System.setOut(wrap(System.out));
+			System.setErr(wrap(System.err));
+		}
+	}
+
+	private static PrintStream wrap(PrintStream stream)
+	{
+		String encoding = System.getProperty("sun.stdout.encoding");
+
+		if (encoding != null)
+		{
+			try
+			{
+				return new PrintStream(new ThreadConsole(stream), true, encoding);
+			}
+			catch (UnsupportedEncodingException e)
+			{
+			}
+		}
+
+		return new PrintStream(new ThreadConsole(stream), true);
+	}
+
+	/**
+	 * Sends everything the current thread prints to the specified stream,
+	 * installing the per thread streams if necessary.
+	 **/
+	public static void redirect(OutputStream stream)
+	{
+		install();
+		previousTargets.get().add(target.get());
+		target.set(stream);
+	}
+
+	/**
+	 * Sends the current thread's output back to where it went before the
+	 * last redirect(), normally the console.
+	 **/
+	public static void restore()
+	{
+		Vector<OutputStream> previous = previousTargets.get();
+		OutputStream stream = previous.isEmpty() ? null : previous.remove(previous.size() - 1);
+
+		if (stream != null)
+		{
+			target.set(stream);
+		}
+		else
+		{
+			target.remove();
+		}
+	}
+
+	/**
+	 * Writes captured output to where the current thread's output goes,
+	 * either the console or the output of an enclosing redirect.
+	 **/
+	public static void replay(ByteArrayOutputStream captured)
+	{
+		OutputStream stream = target.get();
+
+		try
+		{
+			if (stream != null)
+			{
+				captured.writeTo(stream);
+				stream.flush();
+				return;
+			}
+		}
+		catch (IOException e)
+		{
+			// Captured output is written to memory, which doesn't fail
+		}
+
+		PrintStream out = (originalOut != null) ? originalOut : System.out;
+
+		out.write(captured.toByteArray(), 0, captured.size());
+		out.flush();
+	}
+
+	private OutputStream current()
+	{
+		OutputStream stream = target.get();
+
+		return (stream != null) ? stream : original;
+	}
+
+	public void write(int b) throws IOException
+	{
+		current().write(b);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		current().write(b, off, len);
+	}
+
+	public void flush() throws IOException
+	{
+		current().flush();
+	}
+}
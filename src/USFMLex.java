@@ -237,11 +237,193 @@ public class USFMLex {
   private boolean zzEOFDone;
 
   /* user code: */
-	StringBuffer buf = new StringBuffer();
-	StringBuffer tagBuf = new StringBuffer();
+	/* Text of the TEXT token being read, see appendText() */
+	private char text[] = new char[256];
+	private int textLength;
 	
+	/* Tag name of the tag being read */
+	private char tag[] = new char[16];
+	private int tagLength;
+	
+	/* Length of the text of the last TEXT token, which is at the start of text[] */
+	private int tokenLength;
+	private String tokenString;
+	
+	/* Tag names read so far, so each tag name is only ever one String */
+	private String tagNames[] = new String[64];
+	private int tagNameCount;
+	
+	/* Set by setReuseSymbols() */
+	private boolean reuseSymbols;
+	private final TextSymbol textSymbol = new TextSymbol(null, 0, 0);
+	private final NumericTextSymbol numericSymbol = new NumericTextSymbol(null, 0, 0, 0);
+	private final MacroTextSymbol macroSymbol = new MacroTextSymbol(null, null, 0, 0);
+	private final TagOpenSymbol tagOpenSymbol = new TagOpenSymbol(null, false, 0, 0);
+	private final TagCloseSymbol tagCloseSymbol = new TagCloseSymbol(null, false, 0, 0);
+	private final USFMSymbol eofSymbol = new USFMSymbol(SymbolType.EOF, null, 0, 0);
+	
+	/**
+	 * Chooses whether yylex() creates a new symbol for every token, the
+	 * default, or returns the same symbol object for every token of a kind.
+	 * Reused symbols are only valid until the next call to yylex(), and the
+	 * data of TEXT symbols other than macros is left null: their text is
+	 * read with textChars() and textLength() instead, or textString() if
+	 * a String is needed. Tag names are always shared Strings, so they can
+	 * be used as keys without copying.
+	 */
+	public void setReuseSymbols(boolean reuse) {
+		reuseSymbols = reuse;
+	}
+	
+	/**
+	 * Returns the array holding the text of the last TEXT token, which
+	 * starts at index 0 and is textLength() long. Only valid until the
+	 * next call to yylex().
+	 */
+	public char[] textChars() {
+		return text;
+	}
+	
+	public int textLength() {
+		return tokenLength;
+	}
+	
+	/**
+	 * Returns the text of the last TEXT token as a String, only creating
+	 * the String the first time it is asked for.
+	 */
+	public String textString() {
+		if (tokenString == null)
+			tokenString = new String(text, 0, tokenLength);
+		return tokenString;
+	}
+	
+	private void appendText(char c) {
+		if (textLength == text.length)
+			text = java.util.Arrays.copyOf(text, textLength * 2);
+		text[textLength++] = c;
+	}
+	
+	/* Makes the matched text the text of the token */
+	private void setText(char source[], int offset, int length) {
+		if (length > text.length)
+			text = new char[Math.max(length, text.length * 2)];
+		System.arraycopy(source, offset, text, 0, length);
+		tokenLength = length;
+		tokenString = null;
+	}
+	
+	private void appendTag() {
+		int length = yylength();
+		if (tagLength + length > tag.length)
+			tag = java.util.Arrays.copyOf(tag, Math.max(tagLength + length, tag.length * 2));
+		System.arraycopy(zzBuffer, zzStartRead, tag, tagLength, length);
+		tagLength += length;
+	}
+	
+	/* Returns the tag name read, the same String every time for the same name */
+	private String tagName() {
+		int hash = 0;
+		for (int i = 0; i < tagLength; i++)
+			hash = 31 * hash + tag[i];
+		
+		int mask = tagNames.length - 1;
+		int slot;
+		for (slot = hash & mask; tagNames[slot] != null; slot = (slot + 1) & mask) {
+			String name = tagNames[slot];
+			if (name.length() == tagLength) {
+				int i = 0;
+				while (i < tagLength && name.charAt(i) == tag[i])
+					i++;
+				if (i == tagLength)
+					return name;
+			}
+		}
+		
+		String name = new String(tag, 0, tagLength);
+		tagNames[slot] = name;
+		
+		if (++tagNameCount * 2 > tagNames.length) {
+			String oldNames[] = tagNames;
+			tagNames = new String[oldNames.length * 2];
+			mask = tagNames.length - 1;
+			for (String oldName : oldNames) {
+				if (oldName != null) {
+					for (slot = oldName.hashCode() & mask; tagNames[slot] != null; slot = (slot + 1) & mask);
+					tagNames[slot] = oldName;
+				}
+			}
+		}
+		return name;
+	}
+	
+	private USFMSymbol reuse(USFMSymbol symbol, String data) {
+		symbol.data = data;
+		symbol.line = yyline;
+		symbol.col = yycolumn;
+		return symbol;
+	}
+	
+	/* Returns the text read so far as a TEXT token */
+	private TextSymbol textSymbol(boolean eolAfter) {
+		tokenLength = textLength;
+		tokenString = null;
+		textLength = 0;
+		
+		TextSymbol ts = reuseSymbols ? (TextSymbol) reuse(textSymbol, null)
+			: new TextSymbol(new String(text, 0, tokenLength), yyline, yycolumn);
+		ts.EOLAfter = eolAfter;
+		return ts;
+	}
+	
+	/* Returns the matched number and the spaces after it as a TEXT token */
+	private USFMSymbol numericSymbol() {
+		setText(zzBuffer, zzStartRead, yylength());
+		if (!reuseSymbols)
+			return new NumericTextSymbol(textString(), yyline, yycolumn);
+		
+		int digits = 0;
+		while (digits < tokenLength && text[digits] >= '0' && text[digits] <= '9')
+			digits++;
+		
+		int number = 0;
+		if (digits > 9) /* may not fit, parse it as before */
+			number = Integer.parseInt(textString().trim());
+		else
+			for (int i = 0; i < digits; i++)
+				number = number * 10 + text[i] - '0';
+		numericSymbol.number = number;
+		return reuse(numericSymbol, null);
+	}
+	
+	private USFMSymbol macroSymbol(String macro, String data) {
+		if (data.length() > text.length)
+			text = new char[data.length()];
+		data.getChars(0, data.length(), text, 0);
+		tokenLength = data.length();
+		tokenString = data;
+		if (!reuseSymbols)
+			return new MacroTextSymbol(macro, data, yyline, yycolumn);
+		macroSymbol.macro = macro;
+		return reuse(macroSymbol, data);
+	}
+	
+	private USFMSymbol tagOpenSymbol(boolean spaced) {
+		if (!reuseSymbols)
+			return new TagOpenSymbol(tagName(), spaced, yyline, yycolumn);
+		tagOpenSymbol.spaced = spaced;
+		return reuse(tagOpenSymbol, tagName());
+	}
+	
+	private USFMSymbol tagCloseSymbol() {
+		if (!reuseSymbols)
+			return new TagCloseSymbol(tagName(), false, yyline, yycolumn);
+		return reuse(tagCloseSymbol, tagName());
+	}
 	
 	private USFMSymbol symbol(SymbolType sym) {
+		if (reuseSymbols && sym == SymbolType.EOF)
+			return reuse(eofSymbol, null);
 		return symbol(sym, null);
 	}
 	private USFMSymbol symbol(SymbolType sym, String data) {
@@ -602,38 +784,34 @@ public class USFMLex {
           }
         case 15: break;
         case 13: 
-          { yybegin(YYINITIAL); return new MacroTextSymbol("--nbsp--", "\160", yyline, yycolumn);
+          { yybegin(YYINITIAL); return macroSymbol("--nbsp--", "\160");
           }
         case 16: break;
         case 14: 
-          { yybegin(YYINITIAL); return new MacroTextSymbol("--newline--", " ",  yyline, yycolumn);
+          { yybegin(YYINITIAL); return macroSymbol("--newline--", " ");
           }
         case 17: break;
         case 3: 
-          { String s = buf.toString();
-							buf.setLength(0);
-							yybegin(TAGID);
-							tagBuf.setLength(0);
-							return new TextSymbol(s, yyline, yycolumn);
+          { yybegin(TAGID);
+							tagLength = 0;
+							return textSymbol(false);
           }
         case 18: break;
         case 8: 
-          { yybegin(YYINITIAL); return new TagCloseSymbol(tagBuf.toString(), /* with space? */ false, yyline, yycolumn);
+          { yybegin(YYINITIAL); return tagCloseSymbol();
           }
         case 19: break;
         case 12: 
-          { yybegin(YYINITIAL); return new NumericTextSymbol(yytext(), yyline, yycolumn);
+          { yybegin(YYINITIAL); return numericSymbol();
           }
         case 20: break;
         case 7: 
-          { yybegin(POST_TAG_NUMERAL); return new TagOpenSymbol(tagBuf.toString(), /* with space? */ true, yyline, yycolumn);
+          { yybegin(POST_TAG_NUMERAL); return tagOpenSymbol(/* with space? */ true);
           }
         case 21: break;
         case 4: 
           { // return the string up to this point.
-                            TextSymbol ts = new TextSymbol(buf.toString(), yyline, yycolumn);
-
-                            buf.setLength(0);
+                            TextSymbol ts = textSymbol(false);
 
                             // jump to a state where we can encode the special character
                             yypushback(yylength());
@@ -643,11 +821,11 @@ public class USFMLex {
           }
         case 22: break;
         case 6: 
-          { tagBuf.append(yytext());
+          { appendTag();
           }
         case 23: break;
         case 5: 
-          { yypushback(yylength()); yybegin(YYINITIAL); return new TagOpenSymbol(tagBuf.toString(), false, yyline, yycolumn);
+          { yypushback(yylength()); yybegin(YYINITIAL); return tagOpenSymbol(false);
           }
         case 24: break;
         case 10: 
@@ -659,16 +837,12 @@ public class USFMLex {
           }
         case 26: break;
         case 2: 
-          { buf.append(" ");
-                            String s = buf.toString();
-                            buf.setLength(0);
-                            TextSymbol ts = new TextSymbol(s, yyline, yycolumn);
-                            ts.EOLAfter = true;
-                            return ts;
+          { appendText(' ');
+                            return textSymbol(true);
           }
         case 27: break;
         case 1: 
-          { buf.append(yytext());
+          { appendText(yycharat(0));
           }
         case 28: break;
         default: 
@@ -676,12 +850,11 @@ public class USFMLex {
             zzAtEOF = true;
             switch (zzLexicalState) {
             case YYINITIAL: {
-              if (buf.length() == 0)
+              if (textLength == 0)
                                     return symbol(SymbolType.EOF);
                             else {
-                                    String s = buf.toString();
-                                    buf.setLength(0);
-                                    return new TextSymbol(buf.toString(), yyline, yycolumn);
+                                    textLength = 0;
+                                    return textSymbol(false);
                             }
             }
             case 27: break;
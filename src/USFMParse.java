@@ -2,6 +2,7 @@ import java.io.*;
 import usfm.*;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
 
@@ -47,6 +48,13 @@ public class USFMParse {
         private HashMap<String, String> macroReplacementTable= new HashMap<String, String>();
         private ArrayList<TwoString> literalsReplacementTable= new ArrayList<TwoString>();
         private HashMap<String, String[]> configTable= new HashMap<String, String[]>();
+        /* replacements of closing tags by tag name, from "Replace:" entries for "tag*" */
+        private HashMap<String, String> closingMacroTable= new HashMap<String, String>();
+        private TagClassifier tagClassifier;
+        private LiteralReplacer literalReplacer;
+        private boolean significantWhitespace;
+        /* the verse being parsed, reused for each verse */
+        private VerseBuilder body;
 	
         public USFMParse() {
             String defaultConfig[] = new String[] {
@@ -67,15 +75,40 @@ public class USFMParse {
             for (String cfg: defaultConfig){
                 this.interpretConfigLine(cfg);
             }
+            compileConfig();
 
             
+        }
+        /**
+         * Creates a parser that shares the configuration read by another
+         * parser, so that several books can be parsed at the same time, one
+         * parser per thread. The shared configuration must not be changed
+         * once it is in use.
+         */
+        public USFMParse(USFMParse config) {
+            this.sWJ = config.sWJ;
+            this.emptyVerseString = config.emptyVerseString;
+            this.macroReplacementTable = config.macroReplacementTable;
+            this.literalsReplacementTable = config.literalsReplacementTable;
+            this.configTable = config.configTable;
+            this.closingMacroTable = config.closingMacroTable;
+            this.tagClassifier = config.tagClassifier;
+            this.literalReplacer = new LiteralReplacer(config.literalReplacer);
+            this.significantWhitespace = config.significantWhitespace;
+            this.body = new VerseBuilder(!significantWhitespace);
         }
 	public USFMParse(USFMSymbol current, USFMLex scanner) {
             this.reset(current, scanner);
 	}
+        /**
+         * Starts parsing chapters from a scanner. From here on the scanner
+         * reuses its symbols and the text of each TEXT token is read
+         * straight from its buffer, so no objects are created per token.
+         */
         public void reset(USFMSymbol current, USFMLex scanner) {
 		this.current=current;
 		this.scanner=scanner;
+		scanner.setReuseSymbols(true);
         }
         
         public void readConfig(String fn) {
@@ -97,6 +130,7 @@ public class USFMParse {
 
                     if (line == null) {
                         interpretConfigLine(pair.toString());
+                        compileConfig();
                         break;
                     }
 
@@ -122,6 +156,26 @@ public class USFMParse {
                 ioe.printStackTrace();
             }
         }
+        /**
+         * Builds the lookup structures used while parsing from the
+         * configuration read so far.
+         */
+        private void compileConfig() {
+            tagClassifier = new TagClassifier(configTable);
+            literalReplacer = new LiteralReplacer(literalsReplacementTable);
+            
+            String parts[] = configTable.get("SignificantWhitespace");
+            significantWhitespace = parts != null && parts.length == 1 &&
+                (parts[0].equalsIgnoreCase("true") || parts[0].equalsIgnoreCase("yes") || parts[0].equalsIgnoreCase("1"));
+            // multiple spaces are collapsed as the verse is built
+            body = new VerseBuilder(!significantWhitespace);
+            
+            closingMacroTable = new HashMap<String, String>();
+            for (String macro : macroReplacementTable.keySet()) {
+                if (macro.endsWith("*"))
+                    closingMacroTable.put(macro.substring(0, macro.length() - 1), macroReplacementTable.get(macro));
+            }
+        }
         private void interpretConfigLine(String pair) {
             if (pair.toString().trim().length() == 0)
                 return;
@@ -344,11 +398,10 @@ public class USFMParse {
 				if (verseBody.length() == 0 && this.emptyVerseString != null) {
 					verseBody = new String(this.emptyVerseString);
 				}
-				c.verses.add(verseBody);
-				c.allVerses.append(verseBody);
+				c.addVerse(verseBody);
 //			    System.err.printf("ch vs %d %s\n",
-//			    	c.verses.size(),
-//				((String)c.verses.get( c.verses.size() - 1 )).trim());
+//			    	c.getVerseCount(),
+//				c.getVerse( c.getVerseCount() - 1 ).trim());
 
 				// time to return because it's the next chapter
 				if (current.type == SymbolType.TAG_OPEN && current.data.equals("c") ) {
@@ -383,7 +436,7 @@ public class USFMParse {
 	
 	// parsing of verse body.
 	private String parseVerse2() throws IOException {
-		StringBuffer body = new StringBuffer();
+		body.clear();
 		
 		LOOP: while (true) {
 			lex();
@@ -395,31 +448,18 @@ public class USFMParse {
                                         macroReplacementTable.containsKey( ((MacroTextSymbol)current).macro )) {
                                     body.append(macroReplacementTable.get(((MacroTextSymbol)current).macro));
                                 }
-                                else {
-                                    // just some randomly-generated strings that shouldn't collide with anything real...
-                                    String magic = "bc5a23090b3598aed4351b7fc102a16b GoBibleCreator Intermediate Escape Sequence! 99ffbf13e3df30879eda61002c0bac07";
-                                    String temp = current.data;
-                                    int counter = 0;
-
-                                    // to prevent replacements from clobbering one another...
-                                    // e.g. if the results from one will be acted on by another
-                                    for (TwoString ts : literalsReplacementTable) {
-                                        temp = temp.replace( ts.first, magic + counter + magic );
-                                        counter ++;
-                                    }
-
-                                    counter = 0;
-                                    for (TwoString ts : literalsReplacementTable) {
-                                        temp = temp.replace( magic + counter + magic, ts.second );
-                                        counter ++;
-                                    }
-                                    
-                                    body.append(temp);
+                                else if (current.data != null) {
+                                    // replace all of the literals in one pass without
+                                    // the results of one being acted on by another
+                                    literalReplacer.replace(current.data, body);
+                                }
+                                else { // a reused symbol, the text is in the scanner
+                                    literalReplacer.replace(scanner.textChars(), 0, scanner.textLength(), body);
                                 }
 				break;
 			case TAG_CLOSE:
-				if (macroReplacementTable.containsKey(current.data + "*")) {
-					body.append(macroReplacementTable.get(current.data + "*"));
+				if (closingMacroTable.containsKey(current.data)) {
+					body.append(closingMacroTable.get(current.data));
 				}
 				else if (isDoubleTextualTag(current.data)) {
 					continue LOOP; // ignore
@@ -427,10 +467,10 @@ public class USFMParse {
 				break;
 			case TAG_OPEN:
 				if (current.data.equals("v")) { // new verse
-					return handleWhitespace(body.toString());
+					return body.toString();
 				}
 				else if (current.data.equals("c")) { // new chapter
-					return handleWhitespace(body.toString());
+					return body.toString();
 				}
 				if (macroReplacementTable.containsKey(current.data)) {
 					body.append(macroReplacementTable.get(current.data));
@@ -453,7 +493,8 @@ public class USFMParse {
 				
 				else if (isDoubleAnnotationTag(current.data)) {
 					String tag = current.data;
-                                        USFMSymbol openingTag = current;
+                                        // the symbol is reused, so keep where the tag was
+                                        int line = current.line, col = current.col;
 					
 					// consume until matching closing tag is found
 					do {
@@ -463,7 +504,7 @@ public class USFMParse {
 								!(current.type == SymbolType.TAG_CLOSE && current.data.equals(tag)) );
                                         
                                         if (current.type == SymbolType.EOF) {
-                                            System.out.println("Unclosed tag: " + openingTag.toString());
+                                            System.out.println("Unclosed tag: " + new TagOpenSymbol(tag, false, line, col).toString());
                                         }
 					
 					continue LOOP;
@@ -480,80 +521,103 @@ public class USFMParse {
 		if (body.length() == 0)
 			return null;
 		else
-			return handleWhitespace(body.toString());
+			return body.toString();
 	}
     
+    /* parseVerse2() collapses spaces as it goes, this does the same to a finished string */
     public String handleWhitespace(String s) {
-    	String parts[] = configTable.get("SignificantWhitespace");
-
-    	if (parts.length == 1 && (parts[0].equalsIgnoreCase("true") || parts[0].equalsIgnoreCase("yes") || parts[0].equalsIgnoreCase("1")) ) {
+    	if (significantWhitespace) {
 		return s;
     	}
-    	return s.replaceAll(" [ ]+", " "); // collapse all multiple spaces into a single space.
+    	return new VerseBuilder(true).append(s).toString(); // collapse all multiple spaces into a single space.
     }
 	private boolean isSingularTag(String comp) {
-                String sMarker[] = configTable.get("SingularTags");//.split("\\s+");
-	
-		for (String s : sMarker) {
-			if (comp.equals(s)) return true;
-		}
-		
-		// those followed immediately by a number, e.g. \q1
-                String sMarkerN[] = configTable.get("SingularTagsWithNumbers");//.split("\\s+");
-		for (String s : sMarkerN) {
-			if (comp.startsWith(s) && comp.substring(s.length()).matches("^[0-9]+$")) return true;
-		}
-		
-		return false;
+		return (tagClassifier.classify(comp) & TagClassifier.SINGULAR) != 0;
 	}
 	
 	private boolean isSingularGreedyTag(String comp) {
-	
-                String sMarker[] = configTable.get("SingularGreedyTags");//.split("\\s+");
-	
-		for (String s : sMarker) {
-			if (comp.equals(s)) return true;
-		}
-		
-		// those followed immediately by a number, e.g. \q1
-                String sMarkerN[] = configTable.get("SingularGreedyTagsWithNumbers");//.split("\\s+");
-		for (String s : sMarkerN) {
-			if (comp.startsWith(s) && comp.substring(s.length()).matches("^[0-9]+$")) return true;
-		}
-		
-		return false;
+		return (tagClassifier.classify(comp) & TagClassifier.SINGULAR_GREEDY) != 0;
 	}
 
 	private boolean isDoubleTextualTag(String comp) {
-                String sMarker[] = configTable.get("DoubleTextualTags");//.split("\\s+");
-	
-		for (String s : sMarker) {
-			if (comp.equals(s)) return true;
-		}
-		
-		// those followed immediately by a number, e.g. \q1
-                String sMarkerN[] = configTable.get("DoubleTextualTagsWithNumbers");//.split("\\s+");
-		for (String s : sMarkerN) {
-			if (comp.startsWith(s) && comp.substring(s.length()).matches("^[0-9]+$")) return true;
-		}
-		
-		return false;
+		return (tagClassifier.classify(comp) & TagClassifier.DOUBLE_TEXTUAL) != 0;
 	}
 	private boolean isDoubleAnnotationTag(String comp) {
-            String sMarker[] = configTable.get("DoubleAnnotationTags");//.split("\\s+");
-        
-            for (String s : sMarker) {
-                    if (comp.equals(s)) return true;
-            }
-
-            String sMarkerN[] = configTable.get("DoubleAnnotationTagsWithNumbers");//.split("\\s+");
-            for (String s : sMarkerN) {
-                    if (comp.startsWith(s) && comp.substring(s.length()).matches("^[0-9]+$")) return true;
-            }
-            return false;
+		return (tagClassifier.classify(comp) & TagClassifier.DOUBLE_ANNOTATION) != 0;
 	}
 }
 
+/**
+ * The tag lists of the parse configuration compiled into lookup tables, so
+ * that a tag can be classified without scanning the lists. A tag may belong
+ * to several classes, so classify() returns a combination of the class bits.
+ * Tags are remembered once classified, so after the first few verses each
+ * tag is a single hash lookup. Safe to share between parsers on different threads.
+ */
+class TagClassifier {
+    public final static int SINGULAR = 1;
+    public final static int SINGULAR_GREEDY = 2;
+    public final static int DOUBLE_TEXTUAL = 4;
+    public final static int DOUBLE_ANNOTATION = 8;
+
+    private final static String CLASS_NAMES[] = {"SingularTags", "SingularGreedyTags", "DoubleTextualTags", "DoubleAnnotationTags"};
+
+    /** Classes of the tags listed as they are. **/
+    private HashMap<String, Integer> tags = new HashMap<String, Integer>();
+
+    /** Classes of the tags that may be followed by a number, e.g. \q1 **/
+    private HashMap<String, Integer> numberedTags = new HashMap<String, Integer>();
+
+    /** Tags classified so far. **/
+    private ConcurrentHashMap<String, Integer> classified = new ConcurrentHashMap<String, Integer>();
+
+    public TagClassifier(HashMap<String, String[]> configTable) {
+        for (int i = 0; i < CLASS_NAMES.length; i++) {
+            add(tags, configTable.get(CLASS_NAMES[i]), 1 << i);
+            add(numberedTags, configTable.get(CLASS_NAMES[i] + "WithNumbers"), 1 << i);
+        }
+    }
+
+    private static void add(HashMap<String, Integer> table, String[] names, int tagClass) {
+        if (names == null)
+            return;
+
+        for (String name : names) {
+            Integer previous = table.get(name);
+            table.put(name, (previous == null) ? tagClass : previous | tagClass);
+        }
+    }
+
+    /**
+     * Returns the classes the tag belongs to, or 0 if it doesn't belong to any.
+     */
+    public int classify(String tag) {
+        Integer tagClass = classified.get(tag);
+
+        if (tagClass == null) {
+            tagClass = lookup(tag);
+            classified.put(tag, tagClass);
+        }
+        return tagClass;
+    }
+
+    private int lookup(String tag) {
+        Integer tagClass = tags.get(tag);
+        int result = (tagClass == null) ? 0 : tagClass;
+
+        // Any split of a trailing run of digits may leave a numbered tag,
+        // as the tag itself might end in a digit
+        int i = tag.length();
+        while (i > 0 && tag.charAt(i - 1) >= '0' && tag.charAt(i - 1) <= '9') {
+            i--;
+            tagClass = numberedTags.get(tag.substring(0, i));
+            if (tagClass != null)
+                result |= tagClass;
+        }
+        return result;
+    }
+}
+
 class TwoString {
     public String first, second;
     
@@ -0,0 +1,150 @@
+//
+//  VerseBuilder.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.util.*;
+
+/**
+ * Builds up the text of a verse as the USFM, OSIS and ThML front ends read
+ * it. Unlike a StringBuffer it isn't synchronized, it can be cleared and
+ * reused for the next verse without reallocating, and it can collapse runs
+ * of spaces as the text is appended rather than in a separate pass over
+ * the finished verse, so that the only String created for a verse is the
+ * one returned by toString().
+ **/
+public class VerseBuilder
+{
+	private char[] chars = new char[256];
+
+	private int length;
+
+	/** Whether a space directly after another space is dropped. **/
+	private boolean collapseSpaces;
+
+	/**
+	 * @param collapseSpaces If true then runs of spaces are collapsed into a
+	 * single space, as USFM does unless SignificantWhitespace is set. Other
+	 * white space characters are left alone.
+	 **/
+	public VerseBuilder(boolean collapseSpaces)
+	{
+		this.collapseSpaces = collapseSpaces;
+	}
+
+	public VerseBuilder append(char c)
+	{
+		if (collapseSpaces && c == ' ' && length > 0 && chars[length - 1] == ' ')
+		{
+			return this;
+		}
+
+		if (length == chars.length)
+		{
+			grow(length + 1);
+		}
+
+		chars[length++] = c;
+
+		return this;
+	}
+
+	public VerseBuilder append(char[] text, int offset, int count)
+	{
+		if (collapseSpaces)
+		{
+			for (int i = offset; i < offset + count; i++)
+			{
+				append(text[i]);
+			}
+		}
+		else
+		{
+			if (length + count > chars.length)
+			{
+				grow(length + count);
+			}
+
+			System.arraycopy(text, offset, chars, length, count);
+			length += count;
+		}
+
+		return this;
+	}
+
+	public VerseBuilder append(CharSequence text)
+	{
+		int count = text.length();
+
+		if (collapseSpaces)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				append(text.charAt(i));
+			}
+		}
+		else
+		{
+			if (length + count > chars.length)
+			{
+				grow(length + count);
+			}
+
+			if (text instanceof String)
+			{
+				((String) text).getChars(0, count, chars, length);
+			}
+			else
+			{
+				for (int i = 0; i < count; i++)
+				{
+					chars[length + i] = text.charAt(i);
+				}
+			}
+
+			length += count;
+		}
+
+		return this;
+	}
+
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * Cuts the verse back to a shorter length, eg to drop something appended
+	 * that turned out not to be wanted.
+	 **/
+	public void setLength(int length)
+	{
+		if (length > this.length)
+		{
+			throw new IndexOutOfBoundsException(length + " > " + this.length);
+		}
+
+		this.length = length;
+	}
+
+	/**
+	 * Empties the builder ready for the next verse.
+	 **/
+	public void clear()
+	{
+		length = 0;
+	}
+
+	public String toString()
+	{
+		return new String(chars, 0, length);
+	}
+
+	private void grow(int minimumLength)
+	{
+		chars = Arrays.copyOf(chars, Math.max(minimumLength, chars.length * 2));
+	}
+}
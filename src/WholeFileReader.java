@@ -0,0 +1,159 @@
+//
+//  WholeFileReader.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+
+/**
+ * Reads a whole text file into memory at once and decodes it straight into
+ * the array passed to read(). Used in place of a BufferedReader around an
+ * InputStreamReader around a FileInputStream, each of which copies the
+ * text through a buffer of its own, when a whole file is going to be read
+ * by USFMLex, which already reads in large blocks.
+ * <p>
+ * The file is read into a heap buffer rather than memory mapped, as a
+ * mapping can't be released until it is garbage collected, and a mapped
+ * file can't be replaced or deleted on Windows, eg by a checkout while the
+ * build daemon is running.
+ * </p>
+ * <p>
+ * As with InputStreamReader, bytes that aren't valid in the character set
+ * are replaced rather than reported.
+ * </p>
+ **/
+public class WholeFileReader extends Reader
+{
+	private ByteBuffer bytes;
+
+	private CharsetDecoder decoder;
+
+	/** Set once the decoder has been flushed at the end of the file. **/
+	private boolean flushed;
+
+	/**
+	 * Holds a character decoded by a read of a single character that had to
+	 * decode a surrogate pair, to be returned by the next read.
+	 **/
+	private CharBuffer pending = CharBuffer.allocate(2);
+
+	/**
+	 * Reads the file into memory.
+	 * @param file File to read.
+	 * @param charsetName Character set of the file, eg "UTF-8".
+	 **/
+	public WholeFileReader(File file, String charsetName) throws IOException
+	{
+		decoder = Charset.forName(charsetName).newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		FileInputStream inputStream = new FileInputStream(file);
+
+		try
+		{
+			FileChannel channel = inputStream.getChannel();
+
+			if (channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException(file.getName() + " is too large to read.");
+			}
+
+			bytes = ByteBuffer.allocate((int) channel.size());
+
+			while (bytes.hasRemaining() && channel.read(bytes) != -1)
+			{
+			}
+
+			bytes.flip();
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		pending.flip();
+	}
+
+	public int read(char[] buffer, int offset, int length) throws IOException
+	{
+		if (bytes == null)
+		{
+			throw new IOException("Stream closed");
+		}
+
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		if (pending.hasRemaining())
+		{
+			buffer[offset] = pending.get();
+			return 1;
+		}
+
+		// A single char may not be enough room to decode anything into
+		if (length == 1)
+		{
+			pending.clear();
+			int count = decode(pending);
+			pending.flip();
+
+			if (count <= 0)
+			{
+				return count;
+			}
+
+			buffer[offset] = pending.get();
+			return 1;
+		}
+
+		return decode(CharBuffer.wrap(buffer, offset, length));
+	}
+
+	/**
+	 * Decodes as much as fits into the buffer.
+	 * @return Number of characters decoded, or -1 at the end of the file.
+	 **/
+	private int decode(CharBuffer out) throws IOException
+	{
+		int start = out.position();
+
+		if (!flushed)
+		{
+			CoderResult result = decoder.decode(bytes, out, true);
+
+			if (!result.isOverflow())
+			{
+				result = decoder.flush(out);
+				flushed = !result.isOverflow();
+			}
+
+			if (result.isError())
+			{
+				result.throwException();
+			}
+		}
+
+		int count = out.position() - start;
+
+		return (count == 0 && flushed) ? -1 : count;
+	}
+
+	public boolean ready()
+	{
+		return bytes != null && (pending.hasRemaining() || !flushed);
+	}
+
+	public void close()
+	{
+		bytes = null;
+	}
+}
@@ -7,10 +7,19 @@ package jolon.xml;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Referenced classes of package jolon.xml:
 //            XMLAttribute, XMLCompatible
 
+/**
+ * An element of an XML tree. Children and attributes are kept in arrays
+ * that are only allocated once something is added, as most elements of a
+ * Bible (the text between tags) have neither. getChild() looks children up
+ * through an index by tag, built the first time it is needed for an element
+ * with many children. The index isn't updated if a child's tag is changed
+ * with setTag(), and CDATA children, whose tag is their text, aren't in it.
+ */
 public class XMLObject
     implements XMLCompatible
 {
@@ -19,13 +28,13 @@ public class XMLObject
     {
         this.tag = tag;
         data = data;
-        children = new Vector();
-        attributes = new Vector();
+        children = NO_CHILDREN;
+        attributes = NO_ATTRIBUTES;
     }
 
     public void add(XMLObject inObject)
     {
-        children.addElement(inObject);
+        addXMLChild(inObject);
     }
 
     public void fromXML(XMLObject xmlobject)
@@ -34,18 +43,26 @@ public class XMLObject
 
     public XMLCompatible addXMLChild(XMLCompatible inObject)
     {
-        children.addElement(inObject);
+        if(numberOfChildren == children.length)
+            children = (XMLCompatible[])Arrays.copyOf(children, Math.max(4, numberOfChildren * 2));
+        children[numberOfChildren++] = inObject;
+        if(childIndex != null)
+            indexChild(inObject);
         return inObject;
     }
 
     public XMLObject getAt(int index)
     {
-        return (XMLObject)children.elementAt(index);
+        if(index >= numberOfChildren)
+            throw new ArrayIndexOutOfBoundsException(index + " >= " + numberOfChildren);
+        return (XMLObject)children[index];
     }
 
     public void add(XMLAttribute attribute)
     {
-        attributes.addElement(attribute);
+        if(numberOfAttributes == attributes.length)
+            attributes = (XMLAttribute[])Arrays.copyOf(attributes, Math.max(2, numberOfAttributes * 2));
+        attributes[numberOfAttributes++] = attribute;
     }
 
     public void addAttribute(String name, Object data)
@@ -101,10 +118,12 @@ public class XMLObject
         writeTabs(writer, level);
         writer.write("<" + tag);
         writeAttributes(writer);
-        if(children.size() > 0 || data != null)
+        if(numberOfChildren > 0 || data != null)
         {
             writer.write(">\n");
-            for(Enumeration e = children.elements(); e.hasMoreElements(); ((XMLObject)e.nextElement()).write(writer, level + 1));
+            for(int i = 0; i < numberOfChildren; i++)
+                ((XMLObject)children[i]).write(writer, level + 1);
+
             if(data != null)
             {
                 writeTabs(writer, level + 1);
@@ -129,8 +148,11 @@ public class XMLObject
     protected void writeAttributes(Writer writer)
         throws IOException
     {
-        for(Enumeration e = attributes.elements(); e.hasMoreElements(); ((XMLAttribute)e.nextElement()).write(writer))
+        for(int i = 0; i < numberOfAttributes; i++)
+        {
             writer.write(" ");
+            attributes[i].write(writer);
+        }
 
     }
 
@@ -208,26 +230,16 @@ public class XMLObject
     public void generateStringTable(Hashtable stringTable)
     {
         stringTable.put(tag, new Integer(0));
-        if(!attributes.isEmpty())
+        for(int i = 0; i < numberOfAttributes; i++)
         {
-            Enumeration e = attributes.elements();
-            do
-            {
-                if(!e.hasMoreElements())
-                    break;
-                XMLAttribute attribute = (XMLAttribute)e.nextElement();
-                stringTable.put(attribute.getName(), new Integer(0));
-                if(!(attribute.getData() instanceof Double))
-                    stringTable.put(attribute.getDataAsString(), new Integer(0));
-            } while(true);
+            XMLAttribute attribute = attributes[i];
+            stringTable.put(attribute.getName(), new Integer(0));
+            if(!(attribute.getData() instanceof Double))
+                stringTable.put(attribute.getDataAsString(), new Integer(0));
         }
-        if(!children.isEmpty())
-        {
-            XMLObject xml;
-            for(Enumeration e = children.elements(); e.hasMoreElements(); xml.generateStringTable(stringTable))
-                xml = (XMLObject)e.nextElement();
 
-        }
+        for(int i = 0; i < numberOfChildren; i++)
+            ((XMLObject)children[i]).generateStringTable(stringTable);
     }
 
     public void writeWBXMLmultibyteInteger(OutputStream outputStream, int value)
@@ -266,17 +278,17 @@ public class XMLObject
         throws IOException
     {
         int tokenCode = 4;
-        if(!attributes.isEmpty())
+        if(numberOfAttributes > 0)
             tokenCode |= 0x80;
-        if(!children.isEmpty())
+        if(numberOfChildren > 0)
             tokenCode |= 0x40;
         outputStream.write(tokenCode);
         writeWBXMLstringIndex(outputStream, stringTable, tag);
-        if(!attributes.isEmpty())
+        if(numberOfAttributes > 0)
         {
-            for(Enumeration e = attributes.elements(); e.hasMoreElements();)
+            for(int i = 0; i < numberOfAttributes; i++)
             {
-                XMLAttribute attribute = (XMLAttribute)e.nextElement();
+                XMLAttribute attribute = attributes[i];
                 outputStream.write(4);
                 writeWBXMLstringIndex(outputStream, stringTable, attribute.getName());
                 Object data = attribute.getData();
@@ -295,11 +307,10 @@ public class XMLObject
 
             outputStream.write(1);
         }
-        if(!children.isEmpty())
+        if(numberOfChildren > 0)
         {
-            XMLObject xml;
-            for(Enumeration e = children.elements(); e.hasMoreElements(); xml.writeWBXML(outputStream, stringTable))
-                xml = (XMLObject)e.nextElement();
+            for(int i = 0; i < numberOfChildren; i++)
+                ((XMLObject)children[i]).writeWBXML(outputStream, stringTable);
 
             outputStream.write(1);
         }
@@ -334,24 +345,17 @@ public class XMLObject
 
     public Enumeration getChildren()
     {
-        return children.elements();
+        return new ArrayEnumeration(children, numberOfChildren);
     }
 
     public Enumeration getAttributes()
     {
-        return attributes.elements();
+        return new ArrayEnumeration(attributes, numberOfAttributes);
     }
 
     public XMLObject getChild(String inTag)
     {
-        for(Enumeration e = children.elements(); e.hasMoreElements();)
-        {
-            XMLObject currentChild = (XMLObject)e.nextElement();
-            if(currentChild.getTag().equalsIgnoreCase(inTag))
-                return currentChild;
-        }
-
-        return null;
+        return (XMLObject)getXMLChild(inTag);
     }
 
     public boolean hasChild(String inTag)
@@ -361,9 +365,21 @@ public class XMLObject
 
     public XMLCompatible getXMLChild(String inTag)
     {
-        for(Enumeration e = children.elements(); e.hasMoreElements();)
+        if(inTag == null)
+            return null;
+        if(numberOfChildren >= INDEX_THRESHOLD)
+        {
+            if(childIndex == null)
+            {
+                childIndex = new HashMap();
+                for(int i = 0; i < numberOfChildren; i++)
+                    indexChild(children[i]);
+            }
+            return (XMLCompatible)childIndex.get(foldTag(inTag));
+        }
+        for(int i = 0; i < numberOfChildren; i++)
         {
-            XMLCompatible currentChild = (XMLCompatible)e.nextElement();
+            XMLCompatible currentChild = children[i];
             if(currentChild.getTag().equalsIgnoreCase(inTag))
                 return currentChild;
         }
@@ -371,43 +387,70 @@ public class XMLObject
         return null;
     }
 
+    /**
+     * Adds a child to the index unless an earlier child has the same tag.
+     */
+    private void indexChild(XMLCompatible child)
+    {
+        if(child instanceof CDATA)
+            return;
+        String key = foldTag(child.getTag());
+        if(!childIndex.containsKey(key))
+            childIndex.put(key, child);
+    }
+
+    /**
+     * Returns the tag in a form where tags that are equal ignoring case are
+     * the same string. The folded tags are kept in a table so each distinct
+     * tag is only folded once.
+     */
+    static String foldTag(String tag)
+    {
+        String folded = (String)foldedTags.get(tag);
+        if(folded == null)
+        {
+            char chars[] = tag.toCharArray();
+            for(int i = 0; i < chars.length; i++)
+                chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+            folded = new String(chars);
+            String existing = (String)foldedTags.putIfAbsent(folded, folded);
+            if(existing != null)
+                folded = existing;
+            foldedTags.putIfAbsent(tag, folded);
+        }
+        return folded;
+    }
+
     public XMLAttribute getAttribute(String name)
     {
-label0:
+        if(name == null)
+            return null;
+        for(int i = 0; i < numberOfAttributes; i++)
         {
-            if(name == null)
-                break label0;
-            Enumeration e = attributes.elements();
-            XMLAttribute currentAttribute;
-            String attributeName;
-            do
-            {
-                do
-                {
-                    if(!e.hasMoreElements())
-                        break label0;
-                    currentAttribute = (XMLAttribute)e.nextElement();
-                } while(currentAttribute == null);
-                attributeName = currentAttribute.getName();
-            } while(attributeName == null || !attributeName.equalsIgnoreCase(name));
-            return currentAttribute;
+            XMLAttribute currentAttribute = attributes[i];
+            if(currentAttribute == null)
+                continue;
+            String attributeName = currentAttribute.getName();
+            if(attributeName != null && attributeName.equalsIgnoreCase(name))
+                return currentAttribute;
         }
+
         return null;
     }
 
     public XMLObject getChildAt(int index)
     {
-        return (XMLObject)children.elementAt(0);
+        return getAt(0);
     }
 
     public int getNumberOfChildren()
     {
-        return children.size();
+        return numberOfChildren;
     }
 
     public boolean hasChildren()
     {
-        return children.size() > 0;
+        return numberOfChildren > 0;
     }
 
     public String toString()
@@ -416,7 +459,7 @@ label0:
         string.append(tag + " : ");
         if(data != null)
             string.append(data.toString().trim() + " ");
-        Enumeration e = children.elements();
+        Enumeration e = getChildren();
         if(e.hasMoreElements())
         {
             string.append("{");
@@ -428,7 +471,7 @@ label0:
 
             string.append("}");
         }
-        e = attributes.elements();
+        e = getAttributes();
         if(e.hasMoreElements())
         {
             string.append("{");
@@ -515,10 +558,47 @@ label0:
         return value;
     }
 
+    /**
+     * Enumerates the first elements of an array.
+     */
+    private static class ArrayEnumeration
+        implements Enumeration
+    {
+
+        public boolean hasMoreElements()
+        {
+            return index < count;
+        }
+
+        public Object nextElement()
+        {
+            if(index >= count)
+                throw new NoSuchElementException();
+            return array[index++];
+        }
+
+        private Object array[];
+        private int count;
+        private int index;
+
+        ArrayEnumeration(Object array[], int count)
+        {
+            this.array = array;
+            this.count = count;
+        }
+    }
+
     String tag;
     Object data;
-    Vector children;
-    Vector attributes;
+    XMLCompatible children[];
+    int numberOfChildren;
+    XMLAttribute attributes[];
+    int numberOfAttributes;
+    HashMap childIndex;
+    private static final XMLCompatible NO_CHILDREN[] = new XMLCompatible[0];
+    private static final XMLAttribute NO_ATTRIBUTES[] = new XMLAttribute[0];
+    private static final int INDEX_THRESHOLD = 8;
+    private static final ConcurrentHashMap foldedTags = new ConcurrentHashMap();
     public static final int END = 1;
     public static final int LITERAL = 4;
     public static final int EXT_T_1 = 81;
@@ -32,7 +32,7 @@ public class XMLParser
     public XMLParser(Reader inputStream)
     {
         EOF = false;
-        this.inputStream = new LineNumberReader(inputStream);
+        this.inputStream = inputStream;
     }
 
     public XMLParser()
@@ -44,7 +44,7 @@ public class XMLParser
     {
         int lineNumber = -1;
         if(inputStream != null)
-            lineNumber = inputStream.getLineNumber();
+            lineNumber = this.lineNumber;
         return lineNumber;
     }
 
@@ -66,8 +66,9 @@ public class XMLParser
             inputStream.close();
         } else
         {
-            this.inputStream = new LineNumberReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            this.inputStream = new InputStreamReader(new FileInputStream(file), "UTF-8");
             xml = parse(knownTags);
+            this.inputStream.close();
         }
         return xml;
     }
@@ -83,6 +84,10 @@ public class XMLParser
         XMLCompatible parent = new XMLObject("root");
         currentChar = ' ';
         EOF = false;
+        position = 0;
+        limit = 0;
+        lineNumber = 0;
+        afterCarriageReturn = false;
         do
         {
             if(EOF)
@@ -95,7 +100,7 @@ public class XMLParser
                     if(currentTag.regionMatches(1, tagString, 0, tagString.length()))
                         parent = (XMLCompatible)tagStack.pop();
                     else
-                        System.out.println("Error: Line: " + (inputStream.getLineNumber() + 1) + ": End tag <" + currentTag + "> does not have a matching start tag (found <" + tagString + "> instead), ignoring.");
+                        System.out.println("Error: Line: " + (getLineNumber() + 1) + ": End tag <" + currentTag + "> does not have a matching start tag (found <" + tagString + "> instead), ignoring.");
                 } else
                 {
                     if(!currentTag.endsWith("/"))
@@ -124,49 +129,150 @@ public class XMLParser
         return (XMLObject)parent;
     }
 
+    /**
+     * Reads the CDATA up to the next tag, adding it to the parent if it is not
+     * just white space, then reads and returns the tag without its angle brackets.
+     * Text is cut out of the buffer a slice at a time rather than a character
+     * at a time.
+     */
     public String readTag(XMLCompatible parent)
     {
-        StringBuffer tag = new StringBuffer();
         try
         {
-            int current = 0;
-            String cdata = "";
-            char currentChar;
+            // Find the start of the next tag
+            text.setLength(0);
+            boolean whiteSpace = true;
+            boolean found = false;
             do
             {
-                current = inputStream.read();
-                currentChar = (char)current;
-                if(current != -1 && currentChar != '<')
-                    cdata = cdata + currentChar;
-            } while(current != -1 && currentChar != '<');
-            if(!cdata.trim().equals(""))
-                parent.addXMLChild(new CDATA(cdata));
-            boolean inquote = currentChar == '"';
+                if(position == limit && !fill())
+                    break;
+                int start = position;
+                while(position < limit)
+                {
+                    char c = buffer[position];
+                    if(c == '<')
+                    {
+                        found = true;
+                        break;
+                    }
+                    if(c > ' ')
+                        whiteSpace = false;
+                    else
+                    if(c == '\n')
+                        lineNumber++;
+                    position++;
+                }
+                text.append(buffer, start, position - start);
+            } while(!found);
+            if(!whiteSpace)
+                parent.addXMLChild(new CDATA(text.toString()));
+            text.setLength(0);
+            if(!found)
+            {
+                EOF = true;
+                return "";
+            }
+            // Skip the '<' and read up to the closing '>', which doesn't count within quotes
+            position++;
+            boolean inquote = false;
+            found = false;
             do
             {
-                if(current == -1 || currentChar == '>' && !inquote)
+                if(position == limit && !fill())
                     break;
-                current = inputStream.read();
-                currentChar = (char)current;
-                if(currentChar == '"')
-                    inquote = !inquote;
-                if((currentChar != '>' || inquote) && current != -1)
-                    tag.append(currentChar);
-            } while(true);
-            if(current == -1)
+                int start = position;
+                while(position < limit)
+                {
+                    char c = buffer[position];
+                    if(c == '"')
+                        inquote = !inquote;
+                    else
+                    if(c == '>' && !inquote)
+                    {
+                        found = true;
+                        break;
+                    } else
+                    if(c == '\n')
+                        lineNumber++;
+                    position++;
+                }
+                text.append(buffer, start, position - start);
+            } while(!found);
+            if(found)
+                position++;
+            else
                 EOF = true;
         }
         catch(IOException e)
         {
             System.out.println("An IO error has occurred in XMLParser.readTag().");
+            EOF = true;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Refills the buffer from the input, turning line ends into '\n' as
+     * LineNumberReader does.
+     * @return false if the end of the input has been reached.
+     */
+    protected boolean fill()
+        throws IOException
+    {
+        position = 0;
+        do
+        {
+            limit = inputStream.read(buffer, 0, buffer.length);
+            if(limit < 0)
+            {
+                limit = 0;
+                return false;
+            }
+            // Empty if all that was read is the '\n' of a "\r\n" split between reads
+            limit = convertLineEnds(limit);
+        } while(limit == 0);
+        return true;
+    }
+
+    /**
+     * Turns each "\r\n" and lone '\r' in the first length characters of the
+     * buffer into '\n'.
+     * @return The number of characters left.
+     */
+    protected int convertLineEnds(int length)
+    {
+        int in = 0;
+        int out = 0;
+        if(afterCarriageReturn && buffer[0] == '\n')
+        {
+            in = 1;
+        } else
+        {
+            // Nothing needs moving up to the first '\r'
+            while(in < length && buffer[in] != '\r')
+                in++;
+            out = in;
+        }
+        afterCarriageReturn = false;
+        for(; in < length; in++)
+        {
+            char c = buffer[in];
+            if(c == '\n' && afterCarriageReturn)
+            {
+                afterCarriageReturn = false;
+                continue;
+            }
+            afterCarriageReturn = c == '\r';
+            buffer[out++] = afterCarriageReturn ? '\n' : c;
         }
-        return tag.toString();
+        return out;
     }
 
     protected XMLObject createXMLObject(String tag)
     {
         int index = findEndOfTagName(tag);
-        String tagName = tag.substring(0, index);
+        String tagName = names.get(tag, 0, index);
         XMLObject xmlObject = new XMLObject(tagName);
         getAttributes(xmlObject, tag, index);
         return xmlObject;
@@ -218,14 +324,23 @@ public class XMLParser
             int nameIndex = tag.indexOf('=', index);
             if(nameIndex == -1)
                 return -1;
-            xmlAttribute.setName(tag.substring(index, nameIndex).trim());
+            int nameStart = index;
+            int nameEnd = nameIndex;
+            while(nameStart < nameEnd && tag.charAt(nameStart) <= ' ')
+                nameStart++;
+            while(nameEnd > nameStart && tag.charAt(nameEnd - 1) <= ' ')
+                nameEnd--;
+            xmlAttribute.setName(names.get(tag, nameStart, nameEnd));
             int valueStart = tag.indexOf('"', nameIndex);
             if(valueStart == -1 || valueStart + 1 >= length)
                 return -1;
             int valueEnd = tag.indexOf('"', valueStart + 1);
             if(valueEnd == -1)
                 return -1;
-            xmlAttribute.setData(tag.substring(valueStart + 1, valueEnd));
+            if(valueEnd - valueStart - 1 <= MAX_SHARED_VALUE_LENGTH)
+                xmlAttribute.setData(values.get(tag, valueStart + 1, valueEnd));
+            else
+                xmlAttribute.setData(tag.substring(valueStart + 1, valueEnd));
             index = valueEnd;
         } else
         {
@@ -379,8 +494,89 @@ public class XMLParser
         return result;
     }
 
-    LineNumberReader inputStream;
+    /**
+     * A table of strings, so that each distinct string read from a file is
+     * only held once however often it appears.
+     */
+    static class SymbolTable
+    {
+
+        /**
+         * Returns the characters between start and end of the string,
+         * the same String object every time the same characters are asked for.
+         */
+        String get(String string, int start, int end)
+        {
+            int hash = 0;
+            for(int i = start; i < end; i++)
+                hash = 31 * hash + string.charAt(i);
+
+            int length = end - start;
+            int mask = symbols.length - 1;
+            int slot;
+            for(slot = hash & mask; symbols[slot] != null; slot = slot + 1 & mask)
+            {
+                String symbol = symbols[slot];
+                if(symbol.length() == length && string.regionMatches(start, symbol, 0, length))
+                    return symbol;
+            }
+
+            String symbol = string.substring(start, end);
+            if(intern)
+                symbol = symbol.intern();
+            symbols[slot] = symbol;
+            if(++count * 2 > symbols.length)
+                rehash();
+            return symbol;
+        }
+
+        private void rehash()
+        {
+            String oldSymbols[] = symbols;
+            symbols = new String[oldSymbols.length * 2];
+            int mask = symbols.length - 1;
+            for(int i = 0; i < oldSymbols.length; i++)
+            {
+                String symbol = oldSymbols[i];
+                if(symbol == null)
+                    continue;
+                int slot;
+                for(slot = symbol.hashCode() & mask; symbols[slot] != null; slot = slot + 1 & mask);
+                symbols[slot] = symbol;
+            }
+
+        }
+
+        private String symbols[] = new String[64];
+        private int count;
+        private boolean intern;
+
+        SymbolTable(boolean intern)
+        {
+            this.intern = intern;
+        }
+    }
+
+    Reader inputStream;
+    /**
+     * Tag and attribute names. They are interned, so each name is a single
+     * String however often it occurs. Names from parseWBXML() or setTag()
+     * aren't, so names must still be compared with equals().
+     */
+    SymbolTable names = new SymbolTable(true);
+    /** Attribute values no longer than MAX_SHARED_VALUE_LENGTH, such as type and osisID values. */
+    SymbolTable values = new SymbolTable(false);
+    char buffer[] = new char[BUFFER_SIZE];
+    int position;
+    int limit;
+    int lineNumber;
+    /** Whether the last character read was a '\r', so that a '\n' following it is skipped. */
+    boolean afterCarriageReturn;
+    StringBuilder text = new StringBuilder();
     Stack tagStack;
     char currentChar;
     boolean EOF;
+    public static final int BUFFER_SIZE = 0x10000;
+    /** Longer attribute values are rarely repeated so aren't worth looking up. */
+    public static final int MAX_SHARED_VALUE_LENGTH = 32;
 }
\ No newline at end of file
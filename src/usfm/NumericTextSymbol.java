@@ -7,5 +7,11 @@ public class NumericTextSymbol extends TextSymbol {
 		
 		number=Integer.parseInt(data.trim());
 	}
+	
+	public NumericTextSymbol(String data, int number, int line, int col) {
+		super(data, line, col);
+		
+		this.number = number;
+	}
 
 }
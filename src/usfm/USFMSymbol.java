@@ -22,7 +22,8 @@ public class USFMSymbol {
         
     @Override
         public String toString() {
-            return "" + type + " (" + data.substring(0, Math.min(20,data.length())) + ") on line " + this.line + " column " + this.col;
+            String text = (data == null) ? "" : data.substring(0, Math.min(20,data.length()));
+            return "" + type + " (" + text + ") on line " + this.line + " column " + this.col;
                 
         }
 }
@@ -0,0 +1,60 @@
+//
+//  XmlDump.java
+//  GoBibleCreator
+//
+//  For the glory of our Lord Jesus Christ and the furtherance of His Kingdom.
+//  This file is placed into the public domain.
+//
+
+import java.io.*;
+import jolon.xml.*;
+
+/**
+ * Parses an XML file with XMLParser and writes out the tree, so that the
+ * trees from different versions of the parser can be compared. The file is
+ * parsed twice, once as GoBibleCreator reads it and once a character at a
+ * time, which splits every "\r\n" between two reads of the input.
+ * <p>
+ * Usage: java XmlDump file.xml
+ * </p>
+ **/
+public class XmlDump
+{
+	public static void main(String[] args) throws IOException
+	{
+		File file = new File(args[0]);
+		Writer out = new OutputStreamWriter(System.out, "UTF-8");
+
+		System.out.println("== Read from the file");
+		write(XMLParser.parseFile(file), out);
+
+		System.out.println("== Read a character at a time");
+		Reader reader = new OneCharReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		write(new XMLParser(reader).parse(), out);
+		reader.close();
+	}
+
+	private static void write(XMLObject xml, Writer out) throws IOException
+	{
+		xml.writeXML(out);
+		out.flush();
+
+		System.out.println();
+	}
+
+	/**
+	 * Returns at most one character from each read.
+	 **/
+	private static class OneCharReader extends FilterReader
+	{
+		OneCharReader(Reader in)
+		{
+			super(in);
+		}
+
+		public int read(char[] buffer, int offset, int length) throws IOException
+		{
+			return super.read(buffer, offset, Math.min(length, 1));
+		}
+	}
+}